@@ -47,10 +47,18 @@ import com.ninjaguild.dragoneggdrop.dragon.DragonTemplate;
 import com.ninjaguild.dragoneggdrop.events.DragonLifeListeners;
 import com.ninjaguild.dragoneggdrop.events.LootListeners;
 import com.ninjaguild.dragoneggdrop.events.PortalClickListener;
+import com.ninjaguild.dragoneggdrop.events.PortalEffectListeners;
 import com.ninjaguild.dragoneggdrop.events.RespawnListeners;
+import com.ninjaguild.dragoneggdrop.management.AnimationTicker;
 import com.ninjaguild.dragoneggdrop.management.DEDManager;
 import com.ninjaguild.dragoneggdrop.management.EndWorldWrapper;
+import com.ninjaguild.dragoneggdrop.management.ParticleBudgetManager;
+import com.ninjaguild.dragoneggdrop.management.ServerLoadMonitor;
+import com.ninjaguild.dragoneggdrop.utils.BattleRandom;
 import com.ninjaguild.dragoneggdrop.utils.ConfigUtil;
+import com.ninjaguild.dragoneggdrop.utils.ParticleTrajectory;
+import com.ninjaguild.dragoneggdrop.utils.math.ExpressionCache;
+import com.ninjaguild.dragoneggdrop.utils.runnables.EerieEndRunnable;
 import com.ninjaguild.dragoneggdrop.versions.NMSAbstract;
 import com.ninjaguild.dragoneggdrop.versions.v1_10.NMSAbstract1_10_R1;
 import com.ninjaguild.dragoneggdrop.versions.v1_11.NMSAbstract1_11_R1;
@@ -84,11 +92,8 @@ public class DragonEggDrop extends JavaPlugin {
 	private static final String CHAT_PREFIX = ChatColor.DARK_GRAY + "[" + ChatColor.GRAY + "DED" + ChatColor.DARK_GRAY + "] " + ChatColor.GRAY;
 	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
 	
-	/* TODO for version (1.5.0)
-	 * - Aesthetic oriented update
-	 * - The portal should display a broken fire sphere-like effect surrounding it
-	 * - Configuration option, "eerie-end", which covers the central end island with purple particles and smoke
-	 */
+	// The end portal location of a vanilla dragon battle (see DragonBattle#getEndPortalLocation())
+	private static final double VANILLA_PORTAL_X = 0.5, VANILLA_PORTAL_Z = 0.5;
 	
 	private static final int RESOURCE_ID = 35570;
 	private static final String SPIGET_LINK = "https://api.spiget.org/v2/resources/" + RESOURCE_ID + "/versions/latest";
@@ -98,6 +103,12 @@ public class DragonEggDrop extends JavaPlugin {
 
 	private DEDManager dedManager;
 	private NMSAbstract nmsAbstract;
+	private ExpressionCache expressionCache;
+	private ParticleTrajectory particleTrajectory;
+	private ParticleBudgetManager particleBudget;
+	private ServerLoadMonitor loadMonitor;
+	private AnimationTicker animationTicker;
+	private EerieEndRunnable eerieEnd;
 	
 	private BukkitTask updateTask;
 	
@@ -133,6 +144,12 @@ public class DragonEggDrop extends JavaPlugin {
 		}
 		
 		this.dedManager = new DEDManager(this);
+		this.expressionCache = new ExpressionCache();
+		this.bakeParticleTrajectory();
+		this.particleBudget = new ParticleBudgetManager(this);
+		this.loadMonitor = new ServerLoadMonitor(this);
+		this.animationTicker = new AnimationTicker(this);
+		this.startEerieEnd();
 		
 		// Load temp data (reload support)
 		this.tempDataFile = new File(getDataFolder(), "tempData.json");
@@ -146,6 +163,7 @@ public class DragonEggDrop extends JavaPlugin {
 		Bukkit.getPluginManager().registerEvents(new LootListeners(this), this);
 		Bukkit.getPluginManager().registerEvents(new RespawnListeners(this), this);
 		Bukkit.getPluginManager().registerEvents(new PortalClickListener(this), this);
+		Bukkit.getPluginManager().registerEvents(new PortalEffectListeners(this), this);
 
 		// Register commands
 		this.registerCommand("dragoneggdrop", new DragonEggDropCmd(this));
@@ -189,6 +207,7 @@ public class DragonEggDrop extends JavaPlugin {
 		// Clear the world wrappers
 		this.dedManager.getWorldWrappers().forEach(EndWorldWrapper::stopRespawn);
 		this.dedManager.clearWorldWrappers();
+		this.animationTicker.clear();
 	}
 	
 	/**
@@ -219,6 +238,83 @@ public class DragonEggDrop extends JavaPlugin {
 		return nmsAbstract;
 	}
 	
+	/**
+	 * Get the cache of parsed particle shape expressions. This cache is cleared
+	 * when the plugin is reloaded
+	 * 
+	 * @return the expression cache
+	 */
+	public ExpressionCache getExpressionCache() {
+		return expressionCache;
+	}
+	
+	/**
+	 * Get the server-wide particle budget shared by all animations
+	 * 
+	 * @return the particle budget
+	 */
+	public ParticleBudgetManager getParticleBudget() {
+		return particleBudget;
+	}
+	
+	/**
+	 * Get the ticker driving all animations and countdowns of the plugin
+	 * 
+	 * @return the animation ticker
+	 */
+	public AnimationTicker getAnimationTicker() {
+		return animationTicker;
+	}
+	
+	/**
+	 * Get the monitor determining to what degree visual effects should be reduced
+	 * based on server load
+	 * 
+	 * @return the load monitor
+	 */
+	public ServerLoadMonitor getLoadMonitor() {
+		return loadMonitor;
+	}
+	
+	/**
+	 * Get the particle trajectory baked from the current configuration for portals at
+	 * the vanilla origin
+	 * 
+	 * @return the baked trajectory. null if the configured animation could not be baked
+	 */
+	public ParticleTrajectory getParticleTrajectory() {
+		return particleTrajectory;
+	}
+	
+	/**
+	 * Bake the particle trajectory from the current configuration. This should be
+	 * called whenever the configuration is reloaded
+	 */
+	public void bakeParticleTrajectory() {
+		File cacheFile = (getConfig().getBoolean("Particles.Advanced.persist-trajectory", false) ? new File(getDataFolder(), "trajectory.bin") : null);
+		this.particleTrajectory = ParticleTrajectory.bake(getConfig(), expressionCache, VANILLA_PORTAL_X, VANILLA_PORTAL_Z, cacheFile);
+	}
+	
+	/**
+	 * Start the eerie-end ambient particles if enabled in the current configuration,
+	 * cancelling those previously started. This should be called whenever the
+	 * configuration is reloaded
+	 */
+	public void startEerieEnd() {
+		if (eerieEnd != null) {
+			this.eerieEnd.cancel();
+			this.eerieEnd = null;
+		}
+		
+		if (!getConfig().getBoolean("eerie-end.enabled", false)) return;
+		
+		try {
+			this.eerieEnd = new EerieEndRunnable(this);
+		} catch (IllegalArgumentException e) {
+			this.getLogger().warning("Invalid eerie-end particle type specified. Eerie-end disabled");
+		}
+	}
+	
 	/**
 	 * Get whether there is a new version available and ready for
 	 * download or not
@@ -260,12 +356,15 @@ public class DragonEggDrop extends JavaPlugin {
 		JsonObject root = new JsonObject();
 		
 		for (EndWorldWrapper world : dedManager.getWorldWrappers()) {
-			if (!world.isRespawnInProgress() && world.getActiveBattle() == null) return;
+			if (!world.isRespawnInProgress() && world.getActiveBattle() == null && world.getBattleCount() == 0) continue;
 			
 			JsonObject jsonWorld = new JsonObject();
 			
 			if (world.isRespawnInProgress()) jsonWorld.addProperty("respawnTime", world.getTimeUntilRespawn());
 			if (world.getActiveBattle() != null) jsonWorld.addProperty("activeTemplate", world.getActiveBattle().getIdentifier());
+			if (world.getBattleRandom() != null) jsonWorld.addProperty("battleSeed", world.getBattleRandom().getSeed());
+			jsonWorld.addProperty("battleCount", world.getBattleCount());
+			if (world.getLastTemplate() != null) jsonWorld.addProperty("lastTemplate", world.getLastTemplate());
 			
 			root.add(world.getWorld().getName(), jsonWorld);
 		}
@@ -289,6 +388,10 @@ public class DragonEggDrop extends JavaPlugin {
 				EndWorldWrapper wrapper = dedManager.getWorldWrapper(world);
 				JsonObject element = entry.getValue().getAsJsonObject();
 				
+				if (element.has("battleCount")) wrapper.setBattleCount(element.get("battleCount").getAsLong());
+				if (element.has("battleSeed")) wrapper.setBattleRandom(new BattleRandom(element.get("battleSeed").getAsLong()));
+				if (element.has("lastTemplate")) wrapper.setLastTemplate(element.get("lastTemplate").getAsString());
+				
 				if (element.has("respawnTime")) {
 					if (wrapper.isRespawnInProgress()) wrapper.stopRespawn();
 					
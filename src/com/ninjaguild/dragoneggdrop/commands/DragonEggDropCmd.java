@@ -23,6 +23,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.ninjaguild.dragoneggdrop.DragonEggDrop;
+import com.ninjaguild.dragoneggdrop.management.AnimationTicker;
+import com.ninjaguild.dragoneggdrop.management.ParticleBudgetManager;
+import com.ninjaguild.dragoneggdrop.management.ServerLoadMonitor;
 
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
@@ -66,6 +69,7 @@ public class DragonEggDropCmd implements CommandExecutor, TabCompleter {
 			sender.sendMessage(ChatColor.GOLD + "-- DRAGONEGGDROP HELP --");
 			sender.sendMessage(ChatColor.GOLD + "-----------------------");
 			sender.sendMessage(ChatColor.GOLD + "/dragoneggdrop reload");
+			sender.sendMessage(ChatColor.GOLD + "/dragoneggdrop particles");
 			sender.sendMessage(ChatColor.GOLD + "/dragontemplate list");
 			sender.sendMessage(ChatColor.GOLD + "/dragontemplate <template> (view/info)");
 			sender.sendMessage(ChatColor.GOLD + "/dragontemplate <template> edit addloot [weight]");
@@ -80,10 +84,42 @@ public class DragonEggDropCmd implements CommandExecutor, TabCompleter {
 			
 			this.plugin.reloadConfig();
 			this.plugin.getDEDManager().reloadDragonTemplates();
+			this.plugin.getExpressionCache().clear();
+			this.plugin.bakeParticleTrajectory();
+			this.plugin.getParticleBudget().reload(plugin.getConfig());
+			this.plugin.getLoadMonitor().reload(plugin.getConfig());
+			this.plugin.startEerieEnd();
 			
 			this.plugin.sendMessage(sender, ChatColor.GREEN + "Reload complete!");
 		}
 		
+		else if (args[0].equalsIgnoreCase("particles")) {
+			if (!sender.hasPermission("dragoneggdrop.particles")) {
+				this.plugin.sendMessage(sender, ChatColor.RED + "Permission denied!");
+				return true;
+			}
+			
+			ParticleBudgetManager budget = plugin.getParticleBudget();
+			sender.sendMessage(ChatColor.GOLD + "-----------------------");
+			sender.sendMessage(ChatColor.GOLD + "-- PARTICLE LOAD --");
+			sender.sendMessage(ChatColor.GOLD + "-----------------------");
+			sender.sendMessage(ChatColor.GOLD + "Active animations: " + ChatColor.YELLOW + budget.getActiveAnimations());
+			sender.sendMessage(ChatColor.GOLD + "Particles last tick: " + ChatColor.YELLOW + budget.getLastTickParticles() + formatLimit(budget.getMaxParticles())
+					+ ChatColor.GOLD + " (peak " + budget.getPeakParticles() + ")");
+			sender.sendMessage(ChatColor.GOLD + "Packets last tick: " + ChatColor.YELLOW + budget.getLastTickPackets() + formatLimit(budget.getMaxPackets())
+					+ ChatColor.GOLD + " (peak " + budget.getPeakPackets() + ")");
+			sender.sendMessage(ChatColor.GOLD + "Packets throttled last tick: " + ChatColor.YELLOW + budget.getLastTickThrottledPackets());
+			
+			AnimationTicker ticker = plugin.getAnimationTicker();
+			sender.sendMessage(ChatColor.GOLD + "Animation tasks: " + ChatColor.YELLOW + ticker.getActiveTasks()
+					+ ChatColor.GOLD + String.format(" (%.2fms last tick, %.2fms average, %.2fms peak)", ticker.getLastTickTime(), ticker.getAverageTickTime(), ticker.getPeakTickTime()));
+			
+			ServerLoadMonitor loadMonitor = plugin.getLoadMonitor();
+			sender.sendMessage(ChatColor.GOLD + "Average tick: " + ChatColor.YELLOW + String.format("%.1f", loadMonitor.getAverageTickDuration()) + "ms"
+					+ ChatColor.GOLD + " (effect reduction level " + loadMonitor.getDegradationLevel() + ")");
+			sender.sendMessage(ChatColor.GOLD + "-----------------------");
+		}
+		
 		return true;
 	}
 	
@@ -94,8 +130,13 @@ public class DragonEggDropCmd implements CommandExecutor, TabCompleter {
 		if (args.length == 1) {
 			options.add("help");
 			options.add("reload");
+			options.add("particles");
 		}
 		
 		return options;
 	}
+	
+	private String formatLimit(int limit) {
+		return ChatColor.GOLD + " / " + (limit > 0 ? String.valueOf(limit) : "unlimited");
+	}
 }
\ No newline at end of file
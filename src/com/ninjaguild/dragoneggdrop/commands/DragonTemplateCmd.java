@@ -143,8 +143,26 @@ public class DragonTemplateCmd implements CommandExecutor, TabCompleter {
 					return true;
 				}
 				
-				plugin.sendMessage(sender, "This command is a work in progress. Bother Choco or something... I dunno");
-				// TODO set variables in configuration file
+				if (args.length < 5) {
+					this.plugin.sendMessage(sender, cmd.getLabel() + " " + args[0] + " edit set <weight> <value>");
+					return true;
+				}
+				
+				if (args[3].equalsIgnoreCase("weight")) {
+					double weight = NumberUtils.toDouble(args[4], -1);
+					if (!(weight >= 0) || Double.isInfinite(weight)) {
+						this.plugin.sendMessage(sender, "Invalid spawn weight \"" + args[4] + "\". Must be a number greater than or equal to 0");
+						return true;
+					}
+					
+					// Takes effect for the next respawn without reloading templates
+					template.setSpawnWeight(weight);
+					this.manager.updateSpawnWeight(template);
+					this.plugin.sendMessage(sender, "Set the spawn weight of " + args[0] + " to " + ChatColor.YELLOW + weight);
+					return true;
+				}
+				
+				this.plugin.sendMessage(sender, "Unknown property \"" + args[3] + "\". Properties: weight");
 			}
 		}
 		
@@ -175,6 +193,11 @@ public class DragonTemplateCmd implements CommandExecutor, TabCompleter {
 			}
 		}
 		
+		// Before completion: "/dragontemplate <template> edit set "
+		else if (args.length == 4 && args[1].equalsIgnoreCase("edit") && args[2].equalsIgnoreCase("set")) {
+			options.add("weight");
+		}
+		
 		return options;
 	}
 	
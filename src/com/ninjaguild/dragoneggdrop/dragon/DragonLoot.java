@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -60,11 +61,10 @@ import org.bukkit.plugin.java.JavaPlugin;
  */
 public class DragonLoot {
 	
-	private static final Random RANDOM = new Random();
 	private static final NMSAbstract NMS_ABSTRACT = JavaPlugin.getPlugin(DragonEggDrop.class).getNMSAbstract();
 	
 	private final DragonTemplate template;
-	private final RandomCollection<ItemStack> loot = new RandomCollection<>();
+	private final RandomCollection<ItemStack> loot = RandomCollection.concurrent();
 	
 	private double eggSpawnChance = 100.0;
 	private String eggName = "%dragon%'s Egg";
@@ -73,9 +73,12 @@ public class DragonLoot {
 	private double chestSpawnChance = 0.0;
 	private String chestName = "Loot Chest";
 	private int minLootGen = 3, maxLootGen = 6;
+	private boolean uniqueLoot = false;
 	
 	private List<String> commands = new ArrayList<>();
 	
+	private volatile LootPlan plan;
+	
 	/**
 	 * Construct a new DragonLoot
 	 * 
@@ -84,6 +87,7 @@ public class DragonLoot {
 	protected DragonLoot(DragonTemplate template) {
 		this.template = template;
 		this.parseDragonLoot();
+		this.plan = compilePlan();
 	}
 	
 	/**
@@ -95,6 +99,33 @@ public class DragonLoot {
 		return RandomCollection.copyOf(loot);
 	}
 	
+	/**
+	 * Get an immutable snapshot of the loot to be generated in a chest. Unlike
+	 * {@link #getLoot()}, the loot is not copied and the same snapshot is returned
+	 * until the loot is modified
+	 * 
+	 * @return the random loot snapshot
+	 */
+	public RandomCollection.Snapshot<ItemStack> getLootSnapshot() {
+		return loot.snapshot();
+	}
+	
+	/**
+	 * Get the compiled plan from which this loot is spawned. The plan is compiled when
+	 * the template loads and recompiled the first time it is requested after the egg's
+	 * name, lore, the dragon's name or the loot has been modified
+	 * 
+	 * @return the loot plan
+	 */
+	public LootPlan getPlan() {
+		LootPlan plan = this.plan;
+		if (plan == null) {
+			this.plan = plan = compilePlan();
+		}
+		
+		return plan;
+	}
+	
 	/**
 	 * Add a loot item to the random loot collection
 	 * 
@@ -107,7 +138,8 @@ public class DragonLoot {
 		Validate.notNull(item, "Cannot add null ItemStack to loot");
 		if (weight < 0) weight = 0;
 		
-		this.loot.add(weight, item);
+		this.loot.add(weight, NMS_ABSTRACT.createItemPrototype(item));
+		this.invalidatePlan();
 		
 		if (updateFile && template.configFile != null) {
 			FileConfiguration config = template.configFile;
@@ -205,6 +237,7 @@ public class DragonLoot {
 	 */
 	public void setEggName(String eggName, boolean updateFile) {
 		this.eggName = eggName;
+		this.invalidatePlan();
 		
 		if (updateFile) {
 			this.template.updateConfig("egg-name", eggName);
@@ -238,6 +271,7 @@ public class DragonLoot {
 	 */
 	public void setEggLore(List<String> eggLore, boolean updateFile) {
 		this.eggLore = eggLore;
+		this.invalidatePlan();
 		
 		if (updateFile) {
 			this.template.updateConfig("egg-lore", eggLore);
@@ -335,6 +369,41 @@ public class DragonLoot {
 		return maxLootGen;
 	}
 	
+	/**
+	 * Set whether each item in the chest should be unique or not. If true, items are
+	 * drawn from the loot without replacement, in which case no more items than there
+	 * are in the loot are generated
+	 * 
+	 * @param uniqueLoot whether loot should be unique
+	 * @param updateFile whether to update the dragon file or not
+	 */
+	public void setUniqueLoot(boolean uniqueLoot, boolean updateFile) {
+		this.uniqueLoot = uniqueLoot;
+		
+		if (updateFile) {
+			this.template.updateConfig("unique-loot", uniqueLoot);
+		}
+	}
+	
+	/**
+	 * Set whether each item in the chest should be unique or not and update
+	 * the dragon file (if one exists)
+	 * 
+	 * @param uniqueLoot whether loot should be unique
+	 */
+	public void setUniqueLoot(boolean uniqueLoot) {
+		this.setUniqueLoot(uniqueLoot, true);
+	}
+	
+	/**
+	 * Check whether each item in the chest is unique or not
+	 * 
+	 * @return true if loot is unique
+	 */
+	public boolean isUniqueLoot() {
+		return uniqueLoot;
+	}
+	
 	/**
 	 * Set the chance that a chest will spawn in place of an egg
 	 * 
@@ -495,13 +564,27 @@ public class DragonLoot {
 	 * @param dragon the dragon whose egg should be spawned
 	 */
 	public void spawnLootFor(DragonBattle battle, EnderDragon dragon) {
+		this.spawnLootFor(battle, dragon, ThreadLocalRandom.current());
+	}
+	
+	/**
+	 * Spawn loot for the specific dragon battle with all rolls drawn from the given
+	 * Random (see {@link com.ninjaguild.dragoneggdrop.utils.BattleRandom#STREAM_LOOT})
+	 * 
+	 * @param battle the battle to spawn loot for
+	 * @param dragon the dragon whose egg should be spawned
+	 * @param random the Random from which to draw
+	 */
+	public void spawnLootFor(DragonBattle battle, EnderDragon dragon, Random random) {
 		Validate.notNull(battle, "Cannot spawn loot for null dragon battle");
 		Validate.notNull(dragon, "Cannot spawn loot for null ender dragon");
+		Validate.notNull(random, "Cannot spawn loot with a null random");
 		
 		Location location = battle.getEndPortalLocation();
+		LootPlan plan = getPlan();
 		
-		boolean spawnEgg = RANDOM.nextDouble() * 100 <= eggSpawnChance;
-		boolean spawnChest = RANDOM.nextDouble() * 100 <= chestSpawnChance;
+		boolean spawnEgg = random.nextDouble() * 100 <= eggSpawnChance;
+		boolean spawnChest = random.nextDouble() * 100 <= chestSpawnChance;
 		
 		// Spawn a chest
 		if (spawnChest) {
@@ -510,33 +593,36 @@ public class DragonLoot {
 			NMS_ABSTRACT.setChestName(chest, chestName);
 			
 			Inventory inventory = chest.getInventory();
-			inventory.clear();
+			ItemStack[] contents = new ItemStack[inventory.getSize()];
 			
 			// Spawn an egg within the chest
+			int eggSlot = (spawnEgg ? contents.length / 2 : -1);
 			if (spawnEgg) {
-				ItemStack eggItem = new ItemStack(Material.DRAGON_EGG);
-				ItemMeta eggMeta = eggItem.getItemMeta();
-				eggMeta.setDisplayName(eggName.replace("%dragon%", dragon.getName()));
-				eggMeta.setLore(eggLore);
-				eggItem.setItemMeta(eggMeta);
-				
-				inventory.setItem(inventory.getSize() / 2, eggItem);
+				contents[eggSlot] = plan.getEgg();
 			}
 			
 			// Generate loot within the chest
-			int itemGenCount = Math.max(RANDOM.nextInt(maxLootGen), minLootGen);
-			for (int i = 0; i < itemGenCount; i++) {
-				if (inventory.firstEmpty() == -1) break;
-				
-				int slot = RANDOM.nextInt(inventory.getSize());
-				
-				if (inventory.getItem(slot) != null) {
-					i--;
-					continue;
-				}
+			int itemGenCount = Math.max(random.nextInt(maxLootGen), minLootGen);
+			List<ItemStack> items = (uniqueLoot ? plan.getLoot().nextUnique(itemGenCount, random) : plan.getLoot().next(itemGenCount, random));
+			
+			int[] freeSlots = new int[contents.length];
+			int freeSlotCount = 0;
+			for (int slot = 0; slot < contents.length; slot++) {
+				if (slot != eggSlot) freeSlots[freeSlotCount++] = slot;
+			}
+			
+			// Partial Fisher-Yates shuffle, drawing one distinct free slot per item
+			int itemCount = Math.min(items.size(), freeSlotCount);
+			for (int i = 0; i < itemCount; i++) {
+				int j = i + random.nextInt(freeSlotCount - i);
+				int slot = freeSlots[j];
+				freeSlots[j] = freeSlots[i];
+				freeSlots[i] = slot;
 				
-				inventory.setItem(slot, loot.next());
+				contents[slot] = items.get(i);
 			}
+			
+			inventory.setContents(contents);
 		}
 		
 		// Spawn the egg
@@ -577,6 +663,7 @@ public class DragonLoot {
 		this.chestName = dragonFile.getString("chest-name", "Loot Chest");
 		this.minLootGen = dragonFile.getInt("min-loot");
 		this.maxLootGen = dragonFile.getInt("max-loot");
+		this.uniqueLoot = dragonFile.getBoolean("unique-loot", false);
 		
 		this.commands = dragonFile.getStringList("death-commands");
 		
@@ -630,8 +717,18 @@ public class DragonLoot {
 			enchantments.forEach((e, level) -> meta.addEnchant(e, level, true));
 			item.setItemMeta(meta);
 			
-			this.loot.add(weight, item);
+			this.loot.add(weight, NMS_ABSTRACT.createItemPrototype(item));
 		}
+		
+		this.loot.compile();
+	}
+	
+	void invalidatePlan() {
+		this.plan = null;
+	}
+	
+	private LootPlan compilePlan() {
+		return new LootPlan(NMS_ABSTRACT, template.getName(), eggName, eggLore, loot.snapshot());
 	}
 	
 }
\ No newline at end of file
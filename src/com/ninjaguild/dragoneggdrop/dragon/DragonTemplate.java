@@ -140,6 +140,7 @@ public class DragonTemplate {
 	 */
 	public void setName(String name, boolean updateFile) {
 		this.name = name;
+		this.loot.invalidatePlan();
 		
 		if (updateFile) {
 			this.updateConfig("dragon-name", name);
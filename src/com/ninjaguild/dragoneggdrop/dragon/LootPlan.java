@@ -0,0 +1,99 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.dragon;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.ninjaguild.dragoneggdrop.utils.RandomCollection;
+import com.ninjaguild.dragoneggdrop.versions.NMSAbstract;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+/**
+ * Represents the compiled, immutable form of a {@link DragonLoot} from which its loot is
+ * spawned. The dragon's name is resolved in the egg's name and lore, and the egg and loot
+ * items are converted to prototypes (see {@link NMSAbstract#createItemPrototype(ItemStack)}),
+ * once when compiled rather than every time loot is spawned
+ * 
+ * @author Parker Hawke - 2008Choco
+ */
+public final class LootPlan {
+	
+	private final ItemStack egg;
+	private final ItemMeta eggMeta;
+	private final RandomCollection.Snapshot<ItemStack> loot;
+	
+	LootPlan(NMSAbstract nmsAbstract, String dragonName, String eggName, List<String> eggLore, RandomCollection.Snapshot<ItemStack> loot) {
+		String name = (dragonName != null ? dragonName : "");
+		ItemStack egg = new ItemStack(Material.DRAGON_EGG);
+		
+		if ((eggName != null && !eggName.isEmpty()) || (eggLore != null && !eggLore.isEmpty())) {
+			ItemMeta eggMeta = egg.getItemMeta();
+			if (eggName != null && !eggName.isEmpty()) {
+				eggMeta.setDisplayName(eggName.replace("%dragon%", name));
+			}
+			if (eggLore != null && !eggLore.isEmpty()) {
+				eggMeta.setLore(eggLore.stream().map(s -> s.replace("%dragon%", name)).collect(Collectors.toList()));
+			}
+			
+			egg.setItemMeta(eggMeta);
+			this.eggMeta = eggMeta;
+		} else {
+			this.eggMeta = null;
+		}
+		
+		this.egg = nmsAbstract.createItemPrototype(egg);
+		this.loot = loot;
+	}
+	
+	/**
+	 * Get the dragon egg prototype with this plan's name and lore. The item is shared
+	 * by every spawn of this plan and must not be modified
+	 * 
+	 * @return the dragon egg
+	 */
+	public ItemStack getEgg() {
+		return egg;
+	}
+	
+	/**
+	 * Apply this plan's egg name and lore to an existing dragon egg item
+	 * 
+	 * @param egg the egg to which the name and lore should be applied
+	 */
+	public void applyEggMeta(ItemStack egg) {
+		if (egg != null && eggMeta != null) {
+			egg.setItemMeta(eggMeta);
+		}
+	}
+	
+	/**
+	 * Get the loot prototypes from which chest items are drawn
+	 * 
+	 * @return the loot snapshot
+	 */
+	public RandomCollection.Snapshot<ItemStack> getLoot() {
+		return loot;
+	}
+	
+}
\ No newline at end of file
@@ -26,7 +26,10 @@ import com.ninjaguild.dragoneggdrop.api.BattleState;
 import com.ninjaguild.dragoneggdrop.api.BattleStateChangeEvent;
 import com.ninjaguild.dragoneggdrop.api.PortalCrystal;
 import com.ninjaguild.dragoneggdrop.dragon.DragonTemplate;
+import com.ninjaguild.dragoneggdrop.management.AnimationTask;
+import com.ninjaguild.dragoneggdrop.management.DEDManager;
 import com.ninjaguild.dragoneggdrop.management.EndWorldWrapper;
+import com.ninjaguild.dragoneggdrop.utils.BattleRandom;
 import com.ninjaguild.dragoneggdrop.utils.runnables.DragonDeathRunnable;
 import com.ninjaguild.dragoneggdrop.versions.DragonBattle;
 
@@ -44,7 +47,6 @@ import org.bukkit.event.entity.CreatureSpawnEvent;
 import org.bukkit.event.entity.EntityDeathEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.scheduler.BukkitRunnable;
 
 public class DragonLifeListeners implements Listener {
 	
@@ -70,10 +72,13 @@ public class DragonLifeListeners implements Listener {
 			world.stopRespawn();
 		}
 		
-		DragonTemplate template = plugin.getDEDManager().getRandomTemplate();
+		BattleRandom battleRandom = world.beginBattle();
+		DEDManager manager = plugin.getDEDManager();
+		DragonTemplate template = manager.getRandomTemplate(battleRandom.stream(BattleRandom.STREAM_TEMPLATE), manager.getTemplate(world.getLastTemplate()));
 		if (template != null) {
 			template.applyToBattle(plugin.getNMSAbstract(), dragon, dragonBattle);
 			world.setActiveBattle(template);
+			world.setLastTemplate(template.getIdentifier());
 			
 			if (template.shouldAnnounceRespawn()) {
 				Bukkit.getOnlinePlayers().forEach(p -> p.sendMessage(
@@ -100,7 +105,7 @@ public class DragonLifeListeners implements Listener {
 		BattleStateChangeEvent bscEventCrystals = new BattleStateChangeEvent(dragonBattle, dragon, BattleState.BATTLE_COMMENCED, BattleState.BATTLE_END);
 		Bukkit.getPluginManager().callEvent(bscEventCrystals);
 
-		new BukkitRunnable() {
+		new AnimationTask() {
 			@Override
 			public void run() {
 				if (plugin.getNMSAbstract().getEnderDragonDeathAnimationTime(dragon) >= 185) { // Dragon is dead at 200
@@ -19,11 +19,7 @@
 
 package com.ninjaguild.dragoneggdrop.events;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 import com.ninjaguild.dragoneggdrop.DragonEggDrop;
-import com.ninjaguild.dragoneggdrop.dragon.DragonLoot;
 import com.ninjaguild.dragoneggdrop.dragon.DragonTemplate;
 
 import org.bukkit.Material;
@@ -37,7 +33,6 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.entity.ItemSpawnEvent;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.meta.ItemMeta;
 
 public class LootListeners implements Listener {
 	
@@ -57,23 +52,9 @@ public class LootListeners implements Listener {
 				|| stack.hasItemMeta()) return;
 		
 		DragonTemplate dragon = plugin.getDEDManager().getWorldWrapper(world).getActiveBattle();
-		DragonLoot loot = dragon.getLoot();
-		
-		String eggName = loot.getEggName().replace("%dragon%", dragon.getName());
-		List<String> eggLore = loot.getEggLore().stream()
-				.map(s -> s.replace("%dragon%", dragon.getName()))
-				.collect(Collectors.toList());
-
-		ItemMeta eggMeta = stack.getItemMeta();
-		
-		if (eggName != null && !eggName.isEmpty()) {
-			eggMeta.setDisplayName(eggName);
-		}
-		if (eggLore != null && !eggLore.isEmpty()) {
-			eggMeta.setLore(eggLore);
-		}
+		if (dragon == null) return;
 		
-		stack.setItemMeta(eggMeta);
+		dragon.getLoot().getPlan().applyEggMeta(stack);
 	}
 	
 	@EventHandler
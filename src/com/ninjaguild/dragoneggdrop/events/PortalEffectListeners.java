@@ -0,0 +1,56 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.events;
+
+import com.ninjaguild.dragoneggdrop.DragonEggDrop;
+import com.ninjaguild.dragoneggdrop.api.BattleState;
+import com.ninjaguild.dragoneggdrop.api.BattleStateChangeEvent;
+import com.ninjaguild.dragoneggdrop.management.EndWorldWrapper;
+
+import org.bukkit.Location;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+
+public class PortalEffectListeners implements Listener {
+	
+	private final DragonEggDrop plugin;
+	
+	public PortalEffectListeners(DragonEggDrop plugin) {
+		this.plugin = plugin;
+	}
+	
+	@EventHandler
+	public void onBattleStateChange(BattleStateChangeEvent event) {
+		Location portalLocation = event.getDragonBattle().getEndPortalLocation();
+		if (portalLocation == null) return;
+		
+		EndWorldWrapper worldWrapper = plugin.getDEDManager().getWorldWrapper(portalLocation.getWorld());
+		BattleState state = event.getNewState();
+		
+		// The portal is idle from the moment the loot has spawned until the next respawn begins
+		if (state == BattleState.LOOT_SPAWN) {
+			worldWrapper.startPortalSphere(portalLocation);
+		}
+		else if (state == BattleState.CRYSTALS_SPAWNING || state == BattleState.DRAGON_RESPAWNING || state == BattleState.BATTLE_COMMENCED) {
+			worldWrapper.stopPortalSphere();
+		}
+	}
+	
+}
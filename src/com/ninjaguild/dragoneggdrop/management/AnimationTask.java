@@ -0,0 +1,87 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.management;
+
+import com.ninjaguild.dragoneggdrop.DragonEggDrop;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Represents a task driven by the plugin's {@link AnimationTicker} rather than by its
+ * own entry in the Bukkit scheduler. Tasks are scheduled similarly to a BukkitRunnable
+ * and are run on the main thread
+ *
+ * @author Parker Hawke - 2008Choco
+ */
+public abstract class AnimationTask implements Runnable {
+
+	// The period of tasks that only run once
+	static final long NO_PERIOD = -1;
+
+	long period = NO_PERIOD, countdown;
+	private boolean scheduled = false, cancelled = false;
+
+	/**
+	 * Schedule this task to run once after the given amount of ticks
+	 *
+	 * @param plugin the plugin instance
+	 * @param delay the ticks to wait before running the task
+	 */
+	public void runTaskLater(DragonEggDrop plugin, long delay) {
+		this.schedule(plugin, delay, NO_PERIOD);
+	}
+
+	/**
+	 * Schedule this task to run repeatedly until cancelled
+	 *
+	 * @param plugin the plugin instance
+	 * @param delay the ticks to wait before running the task
+	 * @param period the ticks to wait between runs
+	 */
+	public void runTaskTimer(DragonEggDrop plugin, long delay, long period) {
+		this.schedule(plugin, delay, Math.max(1, period));
+	}
+
+	/**
+	 * Cancel this task. It will not be run again
+	 */
+	public void cancel() {
+		this.cancelled = true;
+	}
+
+	/**
+	 * Check whether this task has been cancelled or not
+	 *
+	 * @return true if cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	private void schedule(DragonEggDrop plugin, long delay, long period) {
+		Validate.isTrue(!scheduled, "Already scheduled");
+
+		this.scheduled = true;
+		this.period = period;
+		this.countdown = delay;
+		plugin.getAnimationTicker().schedule(this);
+	}
+
+}
@@ -0,0 +1,163 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.management;
+
+import java.util.Arrays;
+import java.util.logging.Level;
+
+import com.ninjaguild.dragoneggdrop.DragonEggDrop;
+
+import org.bukkit.scheduler.BukkitRunnable;
+
+/**
+ * Drives every {@link AnimationTask} of the plugin from a single Bukkit task. Active
+ * tasks are held in a compact array and run in the order in which they were scheduled,
+ * after the per-tick state of the {@link ServerLoadMonitor} and {@link ParticleBudgetManager}
+ * has been updated. Tasks scheduled while ticking are first run on the following tick.
+ * <p>
+ * The time spent running tasks is measured every tick, such that the cost of all plugin
+ * animations may be inspected in one place
+ *
+ * @author Parker Hawke - 2008Choco
+ */
+public class AnimationTicker {
+
+	private final DragonEggDrop plugin;
+
+	private AnimationTask[] tasks = new AnimationTask[16];
+	private int size = 0;
+
+	private long lastTickNanos, peakTickNanos;
+	private double averageTickNanos;
+
+	/**
+	 * Construct and start a new AnimationTicker
+	 *
+	 * @param plugin the plugin instance
+	 */
+	public AnimationTicker(DragonEggDrop plugin) {
+		this.plugin = plugin;
+
+		new BukkitRunnable() {
+			@Override
+			public void run() {
+				tick();
+			}
+		}.runTaskTimer(plugin, 1, 1);
+	}
+
+	/**
+	 * Get the amount of tasks currently scheduled
+	 *
+	 * @return the amount of active tasks
+	 */
+	public int getActiveTasks() {
+		return size;
+	}
+
+	/**
+	 * Get the time spent running tasks during the previous tick
+	 *
+	 * @return the tick time in milliseconds
+	 */
+	public double getLastTickTime() {
+		return lastTickNanos / 1_000_000.0;
+	}
+
+	/**
+	 * Get the average time spent running tasks per tick
+	 *
+	 * @return the average tick time in milliseconds
+	 */
+	public double getAverageTickTime() {
+		return averageTickNanos / 1_000_000.0;
+	}
+
+	/**
+	 * Get the longest time spent running tasks in a single tick
+	 *
+	 * @return the peak tick time in milliseconds
+	 */
+	public double getPeakTickTime() {
+		return peakTickNanos / 1_000_000.0;
+	}
+
+	/**
+	 * Cancel and remove all scheduled tasks
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			this.tasks[i].cancel();
+		}
+
+		Arrays.fill(tasks, 0, size, null);
+		this.size = 0;
+	}
+
+	void schedule(AnimationTask task) {
+		if (size == tasks.length) {
+			this.tasks = Arrays.copyOf(tasks, size * 2);
+		}
+
+		this.tasks[size++] = task;
+	}
+
+	private void tick() {
+		long start = System.nanoTime();
+
+		this.plugin.getLoadMonitor().sample(start);
+		this.plugin.getParticleBudget().resetTick();
+
+		// Tasks scheduled while ticking are appended and first run next tick
+		int count = size;
+		for (int i = 0; i < count; i++) {
+			AnimationTask task = tasks[i];
+			if (task.isCancelled() || --task.countdown > 0) continue;
+
+			try {
+				task.run();
+			} catch (Throwable e) {
+				this.plugin.getLogger().log(Level.WARNING, "Animation task " + task.getClass().getName() + " generated an exception", e);
+			}
+
+			if (task.period == AnimationTask.NO_PERIOD) {
+				task.cancel();
+			}
+
+			task.countdown = task.period;
+		}
+
+		// Remove cancelled tasks, preserving order
+		int remaining = 0;
+		for (int i = 0; i < size; i++) {
+			if (!tasks[i].isCancelled()) {
+				this.tasks[remaining++] = tasks[i];
+			}
+		}
+
+		Arrays.fill(tasks, remaining, size, null);
+		this.size = remaining;
+
+		this.lastTickNanos = System.nanoTime() - start;
+		this.peakTickNanos = Math.max(peakTickNanos, lastTickNanos);
+		this.averageTickNanos += (lastTickNanos - averageTickNanos) * 0.05;
+	}
+
+}
@@ -22,11 +22,15 @@ package com.ninjaguild.dragoneggdrop.management;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 import com.ninjaguild.dragoneggdrop.DragonEggDrop;
 import com.ninjaguild.dragoneggdrop.dragon.DragonTemplate;
-import com.ninjaguild.dragoneggdrop.utils.RandomCollection;
+import com.ninjaguild.dragoneggdrop.utils.BattleRandom;
+import com.ninjaguild.dragoneggdrop.utils.DynamicRandomCollection;
 
 import org.apache.commons.lang.Validate;
 import org.bukkit.World;
@@ -37,7 +41,8 @@ import org.bukkit.World;
  */
 public class DEDManager {
 
-	private final RandomCollection<DragonTemplate> dragonTemplates = new RandomCollection<>();
+	private final DynamicRandomCollection<DragonTemplate> dragonTemplates = new DynamicRandomCollection<>();
+	private final Map<String, DragonTemplate> templatesById = new ConcurrentHashMap<>();
 	private final Map<UUID, EndWorldWrapper> worldWrappers = new HashMap<>();
 	private final DragonEggDrop plugin;
 	
@@ -54,40 +59,96 @@ public class DEDManager {
 	
 	/**
 	 * Register a template to the DEDManager in order for it to be used when generating
-	 * dragons in the respawn process
+	 * dragons in the respawn process. Templates with an invalid (negative or non-finite)
+	 * spawn weight are registered with a spawn weight of 0
 	 * 
 	 * @param template the template to register
 	 */
-	public void registerTemplate(DragonTemplate template) {
+	public synchronized void registerTemplate(DragonTemplate template) {
 		Validate.notNull(template, "Cannot register null templates");
 		
-		for (DragonTemplate registeredTemplate : dragonTemplates.values()) {
-			if (registeredTemplate.getIdentifier().equals(template.getIdentifier())) {
-				throw new UnsupportedOperationException("Cannot register two templates with the same identifier (" + template.getIdentifier() + ")");
-			}
+		if (templatesById.containsKey(template.getIdentifier())) {
+			throw new UnsupportedOperationException("Cannot register two templates with the same identifier (" + template.getIdentifier() + ")");
 		}
 		
-		this.dragonTemplates.add(template.getSpawnWeight(), template);
+		if (spawnWeight(template) != template.getSpawnWeight()) {
+			this.plugin.getLogger().warning("Invalid spawn weight " + template.getSpawnWeight() + " for template \"" + template.getIdentifier() + "\". Defaulting to 0");
+			template.setSpawnWeight(0, false);
+		}
+		
+		this.dragonTemplates.add(spawnWeight(template), template);
+		this.templatesById.put(template.getIdentifier(), template);
+	}
+	
+	/**
+	 * Unregister a template from the DEDManager such that it will no longer be used when
+	 * generating dragons in the respawn process
+	 * 
+	 * @param template the template to unregister
+	 * @return true if unregistered, false if the template was not registered
+	 */
+	public synchronized boolean unregisterTemplate(DragonTemplate template) {
+		if (template == null || !templatesById.remove(template.getIdentifier(), template)) return false;
+		
+		return dragonTemplates.remove(template);
+	}
+	
+	/**
+	 * Update the weight at which a registered template is selected to reflect its current
+	 * spawn weight (see {@link DragonTemplate#getSpawnWeight()}). This should be invoked
+	 * after the spawn weight of a registered template has been changed
+	 * 
+	 * @param template the template to update
+	 * @return true if updated, false if the template is not registered
+	 */
+	public synchronized boolean updateSpawnWeight(DragonTemplate template) {
+		if (template == null) return false;
+		
+		return dragonTemplates.setWeight(template, spawnWeight(template));
 	}
 	
 	/**
-	 * Get a collection of all loaded dragon templates
+	 * Get an unmodifiable collection of all loaded dragon templates. The collection
+	 * is not updated when templates are registered or reloaded
 	 * 
 	 * @return all dragon templates
 	 */
 	public Collection<DragonTemplate> getDragonTemplates() {
-		return dragonTemplates.toCollection();
+		return dragonTemplates.values();
 	}
 	
 	/**
-	 * Get a weighted random dragon template pooled from all loaded templates. 
+	 * Get a weighted random dragon template pooled from all loaded templates
 	 * 
 	 * @return a random dragon template. null if none
 	 * 
 	 * @see #getDragonTemplates()
 	 */
 	public DragonTemplate getRandomTemplate() {
-		return dragonTemplates.next();
+		return getRandomTemplate(ThreadLocalRandom.current(), null);
+	}
+	
+	/**
+	 * Get a weighted random dragon template pooled from all loaded templates, drawn from
+	 * the given Random (see {@link BattleRandom#STREAM_TEMPLATE}). If the
+	 * "repeat-weight-multiplier" option is less than 1, the weight of the last template
+	 * is multiplied by it for this draw. The result depends only on the given Random, the
+	 * last template and the loaded templates
+	 * 
+	 * @param random the Random from which to draw
+	 * @param lastTemplate the template selected for the previous battle in the same world
+	 * (see {@link EndWorldWrapper#getLastTemplate()}). Can be null
+	 * @return a random dragon template. null if none
+	 */
+	public synchronized DragonTemplate getRandomTemplate(Random random, DragonTemplate lastTemplate) {
+		double multiplier = getRepeatWeightMultiplier();
+		if (lastTemplate == null || multiplier >= 1.0) {
+			return dragonTemplates.next(random);
+		}
+		
+		// Every template other than the last has a weight of 0
+		DragonTemplate template = dragonTemplates.next(random, lastTemplate, multiplier);
+		return (template != null ? template : dragonTemplates.next(random));
 	}
 	
 	/**
@@ -98,16 +159,15 @@ public class DEDManager {
 	 * @return the resulting template, or null if none exists
 	 */
 	public DragonTemplate getTemplate(String template) {
-		return dragonTemplates.toCollection().stream()
-				.filter(t -> t.getIdentifier().equals(template))
-				.findFirst().orElse(null);
+		return (template != null ? templatesById.get(template) : null);
 	}
 	
 	/**
 	 * Clear all loaded dragon templates
 	 */
-	public void clearTemplates() {
+	public synchronized void clearTemplates() {
 		this.dragonTemplates.clear();
+		this.templatesById.clear();
 	}
 	
 	/**
@@ -115,11 +175,21 @@ public class DEDManager {
 	 * This method implicitly invokes {@link #clearTemplates()} before loading any
 	 * other templates
 	 */
-	public void reloadDragonTemplates() {
-		this.dragonTemplates.clear();
+	public synchronized void reloadDragonTemplates() {
+		this.clearTemplates();
 		
 		for (DragonTemplate template : DragonTemplate.loadTemplates())
-			this.dragonTemplates.add(template.getSpawnWeight(), template);
+			this.registerTemplate(template);
+	}
+	
+	// The template's spawn weight, or 0 if negative, infinite or NaN
+	private static double spawnWeight(DragonTemplate template) {
+		double weight = template.getSpawnWeight();
+		return (weight >= 0 && !Double.isInfinite(weight) ? weight : 0.0);
+	}
+	
+	private double getRepeatWeightMultiplier() {
+		return Math.min(Math.max(plugin.getConfig().getDouble("repeat-weight-multiplier", 1.0), 0.0), 1.0);
 	}
 	
 	/**
@@ -20,14 +20,18 @@
 package com.ninjaguild.dragoneggdrop.management;
 
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 import com.ninjaguild.dragoneggdrop.DragonEggDrop;
 import com.ninjaguild.dragoneggdrop.dragon.DragonTemplate;
 import com.ninjaguild.dragoneggdrop.management.DEDManager.RespawnType;
+import com.ninjaguild.dragoneggdrop.utils.BattleRandom;
+import com.ninjaguild.dragoneggdrop.utils.runnables.PortalSphereRunnable;
 import com.ninjaguild.dragoneggdrop.utils.runnables.RespawnRunnable;
 
 import org.apache.commons.lang.Validate;
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.World.Environment;
 import org.bukkit.configuration.file.FileConfiguration;
@@ -42,9 +46,13 @@ import org.bukkit.entity.EnderDragon;
 public class EndWorldWrapper {
 	
 	private RespawnRunnable respawnTask;
+	private PortalSphereRunnable portalSphere;
 	
 	private boolean respawnInProgress = false;
 	private DragonTemplate activeBattle;
+	private BattleRandom battleRandom;
+	private long battleCount = 0;
+	private String lastTemplate;
 	
 	private final DragonEggDrop plugin;
 	private final UUID world;
@@ -129,6 +137,32 @@ public class EndWorldWrapper {
 		return respawnInProgress;
 	}
 
+	/**
+	 * Start displaying the broken fire sphere around this world's exit portal, if enabled
+	 * in the configuration and not already displayed
+	 * 
+	 * @param portalLocation the location of the exit portal
+	 */
+	public void startPortalSphere(Location portalLocation) {
+		if (portalSphere != null || portalLocation == null || !plugin.getConfig().getBoolean("portal-sphere.enabled", false)) return;
+		
+		try {
+			this.portalSphere = new PortalSphereRunnable(plugin, portalLocation);
+		} catch (IllegalArgumentException e) {
+			this.plugin.getLogger().warning("Invalid portal-sphere particle type specified. Portal sphere not displayed");
+		}
+	}
+	
+	/**
+	 * Stop displaying the broken fire sphere around this world's exit portal
+	 */
+	public void stopPortalSphere() {
+		if (portalSphere != null) {
+			this.portalSphere.cancel();
+			this.portalSphere = null;
+		}
+	}
+	
 	/**
 	 * Get the amount of time remaining until the dragon respawns
 	 * 
@@ -158,4 +192,76 @@ public class EndWorldWrapper {
 		return activeBattle;
 	}
 	
+	/**
+	 * Begin a new battle in this world, deriving its BattleRandom from the configured
+	 * "battle-seed", this world's UUID and the amount of battles previously begun. If
+	 * no server seed is configured, a random one is used for this battle
+	 * 
+	 * @return the new battle's BattleRandom
+	 */
+	public BattleRandom beginBattle() {
+		long serverSeed = plugin.getConfig().getLong("battle-seed", 0L);
+		if (serverSeed == 0) serverSeed = ThreadLocalRandom.current().nextLong();
+		
+		this.battleRandom = BattleRandom.derive(serverSeed, world, battleCount++);
+		return battleRandom;
+	}
+	
+	/**
+	 * Set the BattleRandom of the current battle. This should only be used to restore
+	 * a battle's persisted seed
+	 * 
+	 * @param battleRandom the BattleRandom to set
+	 */
+	public void setBattleRandom(BattleRandom battleRandom) {
+		this.battleRandom = battleRandom;
+	}
+	
+	/**
+	 * Get the BattleRandom of the current (or most recent) battle in this world
+	 * 
+	 * @return the battle's BattleRandom. null if no battle has begun
+	 */
+	public BattleRandom getBattleRandom() {
+		return battleRandom;
+	}
+	
+	/**
+	 * Set the amount of battles that have begun in this world. This should only be used
+	 * to restore the persisted battle count
+	 * 
+	 * @param battleCount the battle count to set
+	 */
+	public void setBattleCount(long battleCount) {
+		this.battleCount = Math.max(battleCount, 0);
+	}
+	
+	/**
+	 * Get the amount of battles that have begun in this world
+	 * 
+	 * @return the battle count
+	 */
+	public long getBattleCount() {
+		return battleCount;
+	}
+	
+	/**
+	 * Set the identifier of the template selected for the most recent battle in this
+	 * world, whose weight is damped when selecting the template of the next battle
+	 * 
+	 * @param lastTemplate the template's identifier. null if none
+	 */
+	public void setLastTemplate(String lastTemplate) {
+		this.lastTemplate = lastTemplate;
+	}
+	
+	/**
+	 * Get the identifier of the template selected for the most recent battle in this world
+	 * 
+	 * @return the template's identifier. null if no template has been selected
+	 */
+	public String getLastTemplate() {
+		return lastTemplate;
+	}
+	
 }
\ No newline at end of file
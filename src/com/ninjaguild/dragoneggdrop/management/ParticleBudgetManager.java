@@ -0,0 +1,223 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.management;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import com.ninjaguild.dragoneggdrop.DragonEggDrop;
+import com.ninjaguild.dragoneggdrop.utils.ParticleEmitter;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.configuration.file.FileConfiguration;
+
+/**
+ * Enforces a server-wide limit on the amount of particles and particle packets sent
+ * per tick across all registered animations. Every active animation is guaranteed an
+ * equal share of the limit each tick, reserved until it first requests particles. The
+ * rest of the limit, including the share left unused by animations that have already
+ * emitted, may be used by any animation. Animations requesting more than is available
+ * are granted only part of their request (see
+ * {@link #allocate(ParticleEmitter, int, int, int)}) and are expected to thin their
+ * frame accordingly
+ *
+ * @author Parker Hawke - 2008Choco
+ */
+public class ParticleBudgetManager {
+
+	// All registered animations and those that have requested particles during the current tick
+	private final Set<ParticleEmitter> animations = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final Set<ParticleEmitter> started = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	private int maxParticles, maxPackets;
+	private int particles, packets, throttledPackets;
+	private int lastParticles, lastPackets, lastThrottledPackets;
+	private int peakParticles, peakPackets;
+
+	/**
+	 * Construct a new ParticleBudgetManager. The budget is reset once per tick by the
+	 * {@link AnimationTicker}
+	 *
+	 * @param plugin the plugin instance
+	 */
+	public ParticleBudgetManager(DragonEggDrop plugin) {
+		this.reload(plugin.getConfig());
+	}
+
+	/**
+	 * Reload the per-tick limits from the configuration
+	 *
+	 * @param config the configuration to read
+	 */
+	public void reload(FileConfiguration config) {
+		this.maxParticles = config.getInt("Particles.budget.max-particles-per-tick", 40000);
+		this.maxPackets = config.getInt("Particles.budget.max-packets-per-tick", 10000);
+	}
+
+	/**
+	 * Register an animation's emitter with this budget
+	 *
+	 * @param emitter the emitter to register
+	 */
+	public void register(ParticleEmitter emitter) {
+		Validate.notNull(emitter, "Cannot register a null emitter");
+
+		this.animations.add(emitter);
+		emitter.setBudget(this);
+	}
+
+	/**
+	 * Unregister an animation's emitter from this budget
+	 *
+	 * @param emitter the emitter to unregister
+	 */
+	public void unregister(ParticleEmitter emitter) {
+		if (animations.remove(emitter)) {
+			this.started.remove(emitter);
+			emitter.setBudget(null);
+		}
+	}
+
+	/**
+	 * Request permission to send a frame of particles to a number of recipients during the
+	 * current tick. Each point of the frame is sent as one packet to every recipient. The
+	 * granted amount of points is bound by the budget remaining after reserving the fair
+	 * share of every animation yet to request particles this tick, and is charged in full
+	 *
+	 * @param emitter the requesting emitter
+	 * @param recipients the amount of players to which each point is sent
+	 * @param points the amount of points in the frame
+	 * @param particlesPerPacket the amount of particles displayed by each packet
+	 *
+	 * @return the amount of points that may be sent to each recipient, between 0 and points
+	 */
+	public int allocate(ParticleEmitter emitter, int recipients, int points, int particlesPerPacket) {
+		if (recipients <= 0 || points <= 0) return 0;
+		if (!animations.contains(emitter)) return points;
+
+		this.started.add(emitter);
+
+		int granted = points;
+		if (maxPackets > 0) {
+			granted = (int) Math.min(granted, available(maxPackets, packets) / recipients);
+		}
+		if (maxParticles > 0 && particlesPerPacket > 0) {
+			granted = (int) Math.min(granted, available(maxParticles, particles) / ((long) recipients * particlesPerPacket));
+		}
+		granted = Math.max(granted, 0);
+
+		int sentPackets = granted * recipients;
+		this.packets += sentPackets;
+		this.particles += sentPackets * particlesPerPacket;
+		this.throttledPackets += (points - granted) * recipients;
+		return granted;
+	}
+
+	// The budget not reserved for animations that have yet to request particles this tick
+	private long available(int max, int used) {
+		long reserved = (long) (animations.size() - started.size()) * (max / animations.size());
+		return Math.max(max - used - reserved, 0);
+	}
+
+	/**
+	 * Get the amount of animations currently registered with this budget
+	 *
+	 * @return the amount of active animations
+	 */
+	public int getActiveAnimations() {
+		return animations.size();
+	}
+
+	/**
+	 * Get the maximum amount of particles per tick. 0 or less if unlimited
+	 *
+	 * @return the particle limit
+	 */
+	public int getMaxParticles() {
+		return maxParticles;
+	}
+
+	/**
+	 * Get the maximum amount of particle packets per tick. 0 or less if unlimited
+	 *
+	 * @return the packet limit
+	 */
+	public int getMaxPackets() {
+		return maxPackets;
+	}
+
+	/**
+	 * Get the amount of particles sent during the previous tick
+	 *
+	 * @return the amount of particles
+	 */
+	public int getLastTickParticles() {
+		return lastParticles;
+	}
+
+	/**
+	 * Get the amount of particle packets sent during the previous tick
+	 *
+	 * @return the amount of packets
+	 */
+	public int getLastTickPackets() {
+		return lastPackets;
+	}
+
+	/**
+	 * Get the amount of particle packets withheld during the previous tick due to the budget
+	 *
+	 * @return the amount of throttled packets
+	 */
+	public int getLastTickThrottledPackets() {
+		return lastThrottledPackets;
+	}
+
+	/**
+	 * Get the highest amount of particles sent in a single tick
+	 *
+	 * @return the peak amount of particles
+	 */
+	public int getPeakParticles() {
+		return peakParticles;
+	}
+
+	/**
+	 * Get the highest amount of particle packets sent in a single tick
+	 *
+	 * @return the peak amount of packets
+	 */
+	public int getPeakPackets() {
+		return peakPackets;
+	}
+
+	void resetTick() {
+		this.lastParticles = particles;
+		this.lastPackets = packets;
+		this.lastThrottledPackets = throttledPackets;
+		this.peakParticles = Math.max(peakParticles, particles);
+		this.peakPackets = Math.max(peakPackets, packets);
+
+		this.particles = packets = throttledPackets = 0;
+		this.started.clear();
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.management;
+
+import com.ninjaguild.dragoneggdrop.DragonEggDrop;
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+/**
+ * Measures the duration of recent server ticks in order to determine to what degree
+ * visual effects should be reduced. A healthy server ticks once every 50 milliseconds;
+ * longer ticks indicate that the server is over its tick budget.
+ * <p>
+ * The degradation level is one of {@link #LEVEL_NONE}, {@link #LEVEL_REDUCED} or
+ * {@link #LEVEL_MINIMAL}. Effects should only ever alter their appearance based on this
+ * level and never their gameplay outcome or timing
+ *
+ * @author Parker Hawke - 2008Choco
+ */
+public class ServerLoadMonitor {
+
+	/**
+	 * Effects are displayed in full
+	 */
+	public static final int LEVEL_NONE = 0;
+
+	/**
+	 * Effects are displayed at a reduced density
+	 */
+	public static final int LEVEL_REDUCED = 1;
+
+	/**
+	 * Effects are displayed at the minimum density
+	 */
+	public static final int LEVEL_MINIMAL = 2;
+
+	private static final int SAMPLES = 100; // 5 seconds
+
+	private final long[] tickDurations = new long[SAMPLES];
+	private long totalDuration = 0, lastTick = 0;
+	private int sampleIndex = 0, sampleCount = 0;
+
+	private boolean enabled;
+	private double reduceThreshold, minimalThreshold;
+
+	/**
+	 * Construct a new ServerLoadMonitor. Tick durations are sampled once per tick by the
+	 * {@link AnimationTicker}
+	 *
+	 * @param plugin the plugin instance
+	 */
+	public ServerLoadMonitor(DragonEggDrop plugin) {
+		this.reload(plugin.getConfig());
+	}
+
+	/**
+	 * Reload the degradation thresholds from the configuration
+	 *
+	 * @param config the configuration to read
+	 */
+	public void reload(FileConfiguration config) {
+		this.enabled = config.getBoolean("adaptive-effects.enabled", false);
+		this.reduceThreshold = config.getDouble("adaptive-effects.reduce-threshold", 55.0);
+		this.minimalThreshold = config.getDouble("adaptive-effects.minimal-threshold", 70.0);
+	}
+
+	/**
+	 * Get the average duration of recent ticks
+	 *
+	 * @return the average tick duration in milliseconds. 50 if no ticks have been measured
+	 */
+	public double getAverageTickDuration() {
+		return (sampleCount > 0 ? (totalDuration / (double) sampleCount) / 1_000_000.0 : 50.0);
+	}
+
+	/**
+	 * Get the level to which visual effects should currently be reduced
+	 *
+	 * @return the degradation level
+	 */
+	public int getDegradationLevel() {
+		if (!enabled) return LEVEL_NONE;
+
+		double average = getAverageTickDuration();
+		return (average >= minimalThreshold ? LEVEL_MINIMAL : (average >= reduceThreshold ? LEVEL_REDUCED : LEVEL_NONE));
+	}
+
+	void sample(long now) {
+		if (lastTick != 0) {
+			long duration = now - lastTick;
+
+			this.totalDuration += duration - tickDurations[sampleIndex];
+			this.tickDurations[sampleIndex] = duration;
+			this.sampleIndex = (sampleIndex + 1) % SAMPLES;
+			this.sampleCount = Math.min(sampleCount + 1, SAMPLES);
+		}
+
+		this.lastTick = now;
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.utils;
+
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Represents the source of all random rolls made for a single dragon battle. Each
+ * battle is identified by a seed derived from a server seed, the UUID of its world and
+ * the amount of battles previously fought in that world. Each kind of roll (see
+ * {@link #STREAM_TEMPLATE} and {@link #STREAM_LOOT}) draws from its own independent
+ * stream of that seed, such that rolls of one kind are reproducible regardless of
+ * whether or when rolls of another kind were made
+ */
+public final class BattleRandom {
+	
+	/**
+	 * The stream from which the battle's dragon template is selected
+	 */
+	public static final int STREAM_TEMPLATE = 1;
+	
+	/**
+	 * The stream from which the battle's egg, chest and loot are rolled
+	 */
+	public static final int STREAM_LOOT = 2;
+	
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	
+	private final long seed;
+	
+	/**
+	 * Construct a new BattleRandom from an existing battle seed
+	 * 
+	 * @param seed the battle seed
+	 */
+	public BattleRandom(long seed) {
+		this.seed = seed;
+	}
+	
+	/**
+	 * Derive the BattleRandom of a battle
+	 * 
+	 * @param serverSeed the configured server seed
+	 * @param world the UUID of the world in which the battle is fought
+	 * @param battle the amount of battles previously fought in the world
+	 * 
+	 * @return the battle's BattleRandom
+	 */
+	public static BattleRandom derive(long serverSeed, UUID world, long battle) {
+		long seed = mix(serverSeed);
+		seed = mix(seed ^ world.getMostSignificantBits());
+		seed = mix(seed ^ world.getLeastSignificantBits());
+		return new BattleRandom(mix(seed + battle * GOLDEN_GAMMA));
+	}
+	
+	/**
+	 * Get the seed of this battle
+	 * 
+	 * @return the battle seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+	
+	/**
+	 * Create a new Random positioned at the start of one of this battle's streams. Every
+	 * call with the same stream returns a Random producing the same sequence
+	 * 
+	 * @param stream the stream to create
+	 * @return the stream's Random
+	 */
+	public Random stream(int stream) {
+		return new Random(mix(seed + stream * GOLDEN_GAMMA));
+	}
+	
+	// SplitMix64 finalizer, spreading every input bit across the result
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+}
\ No newline at end of file
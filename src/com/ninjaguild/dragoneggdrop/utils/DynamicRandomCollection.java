@@ -0,0 +1,333 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A collection of weighted objects whose weights may be changed, and from which objects
+ * may be removed, after they have been added. Weights are held in a Fenwick (binary
+ * indexed) tree such that updating a weight, removing an object and retrieving a random
+ * object all run in O(log n) without rebuilding the collection.
+ * <p>
+ * Unlike the {@link RandomCollection}, each object may only be present once, and objects
+ * are identified by their {@link Object#equals(Object)} and {@link Object#hashCode()}.
+ * All operations are synchronized
+ * 
+ * @param <E> - The type of object to be stored in the Collection
+ */
+public class DynamicRandomCollection<E> {
+	
+	private final Map<E, Integer> indices = new HashMap<>();
+	private final Random random; // null if drawing from ThreadLocalRandom
+	
+	private Object[] values = new Object[8];
+	private double[] weights = new double[8];
+	private double[] tree = new double[9]; // 1-indexed
+	private int size = 0;
+	
+	// Weight updates since the tree was last rebuilt, each of which may accumulate rounding error
+	private int updates = 0;
+	
+	/**
+	 * Construct a new DynamicRandomCollection drawing from the calling thread's
+	 * {@link ThreadLocalRandom}
+	 */
+	public DynamicRandomCollection() {
+		this.random = null;
+	}
+	
+	/**
+	 * Construct a new DynamicRandomCollection with a given Random object
+	 * 
+	 * @param random an instance of Random to use
+	 */
+	public DynamicRandomCollection(Random random) {
+		Validate.notNull(random, "Random instance must not be null");
+		this.random = random;
+	}
+	
+	/**
+	 * Add a new object to the collection with a given weight. Objects with a weight
+	 * of 0 remain in the collection but are never retrieved
+	 * 
+	 * @param weight the weight of the object
+	 * @param result the object to add
+	 * 
+	 * @return true if successfully added, false if the object was already present
+	 */
+	public synchronized boolean add(double weight, E result) {
+		Validate.isTrue(weight >= 0.0D && !Double.isInfinite(weight), "Weight must be finite and not negative");
+		if (indices.containsKey(result)) return false;
+		
+		if (size == values.length) {
+			this.values = Arrays.copyOf(values, size * 2);
+			this.weights = Arrays.copyOf(weights, size * 2);
+			this.rebuildTree();
+		}
+		
+		int index = size++;
+		this.values[index] = result;
+		this.indices.put(result, index);
+		this.updateWeight(index, weight);
+		return true;
+	}
+	
+	/**
+	 * Set the weight of an object in the collection
+	 * 
+	 * @param result the object whose weight to set
+	 * @param weight the new weight
+	 * 
+	 * @return true if set, false if the object is not present
+	 */
+	public synchronized boolean setWeight(E result, double weight) {
+		Validate.isTrue(weight >= 0.0D && !Double.isInfinite(weight), "Weight must be finite and not negative");
+		
+		Integer index = indices.get(result);
+		if (index == null) return false;
+		
+		this.updateWeight(index, weight);
+		return true;
+	}
+	
+	/**
+	 * Get the weight of an object in the collection
+	 * 
+	 * @param result the object whose weight to get
+	 * @return the object's weight. 0 if not present
+	 */
+	public synchronized double getWeight(Object result) {
+		Integer index = indices.get(result);
+		return (index != null ? weights[index] : 0.0);
+	}
+	
+	/**
+	 * Remove an object from the collection
+	 * 
+	 * @param result the object to remove
+	 * @return true if removed, false if the object was not present
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized boolean remove(Object result) {
+		Integer index = indices.remove(result);
+		if (index == null) return false;
+		
+		// Move the last object into the vacated index
+		int last = --size;
+		if (index != last) {
+			E moved = (E) values[last];
+			this.values[index] = moved;
+			this.indices.put(moved, index);
+			this.updateWeight(index, weights[last]);
+		}
+		
+		this.updateWeight(last, 0.0);
+		this.values[last] = null;
+		return true;
+	}
+	
+	/**
+	 * Check whether this collection contains a specific value
+	 * 
+	 * @param value the value to check for
+	 * @return true if the collection contains the value. false otherwise
+	 */
+	public synchronized boolean contains(Object value) {
+		return indices.containsKey(value);
+	}
+	
+	/**
+	 * Retrieve the next object, being a random object in the collection
+	 * based on its weighted value
+	 * 
+	 * @return a random weighted object. null if empty or all weights are 0
+	 */
+	public E next() {
+		return next(random != null ? random : ThreadLocalRandom.current());
+	}
+	
+	/**
+	 * Retrieve the next object, being a random object in the collection based on its
+	 * weighted value, drawn from the given Random rather than that of this collection
+	 * 
+	 * @param random the Random from which to draw
+	 * @return a random weighted object. null if empty or all weights are 0
+	 */
+	public synchronized E next(Random random) {
+		Validate.notNull(random, "Random instance must not be null");
+		
+		double total = prefixSum(size);
+		if (total <= 0) return null;
+		
+		return select(random.nextDouble() * total);
+	}
+	
+	/**
+	 * Retrieve the next object, being a random object in the collection based on its
+	 * weighted value, as though the weight of one object were multiplied by the given
+	 * multiplier. The weights held by the collection are left unchanged
+	 * 
+	 * @param random the Random from which to draw
+	 * @param scaled the object whose weight to multiply
+	 * @param multiplier the multiplier, between 0 and 1
+	 * @return a random weighted object. null if empty or all weights are 0 after scaling
+	 */
+	public synchronized E next(Random random, Object scaled, double multiplier) {
+		Validate.notNull(random, "Random instance must not be null");
+		Validate.isTrue(multiplier >= 0.0D && multiplier <= 1.0D, "Multiplier must be between 0 and 1");
+		
+		Integer index = indices.get(scaled);
+		if (index == null) return next(random);
+		
+		double weight = weights[index], removed = weight * (1.0D - multiplier);
+		double total = prefixSum(size) - removed;
+		if (total <= 0) return null;
+		
+		// Targets beyond the scaled object are shifted past the weight it no longer has
+		double target = random.nextDouble() * total;
+		if (target >= prefixSum(index) + (weight - removed)) {
+			target += removed;
+		}
+		
+		return select(target);
+	}
+	
+	// Select the object at the given position between 0 and the total weight
+	@SuppressWarnings("unchecked")
+	private E select(double target) {
+		// Descend the tree to the first index whose prefix sum exceeds the target
+		int position = 0;
+		for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+			int next = position + step;
+			if (next < tree.length && tree[next] <= target) {
+				position = next;
+				target -= tree[next];
+			}
+		}
+		
+		// Rounding may overshoot or undershoot the objects with weight
+		int index = Math.min(position, size - 1);
+		while (index >= 0 && weights[index] <= 0) index--;
+		if (index < 0) {
+			index = Math.max(position, 0);
+			while (index < size && weights[index] <= 0) index++;
+			if (index >= size) return null;
+		}
+		
+		return (E) values[index];
+	}
+	
+	/**
+	 * Get the sum of all weights in the collection
+	 * 
+	 * @return the total weight
+	 */
+	public synchronized double getTotalWeight() {
+		return prefixSum(size);
+	}
+	
+	/**
+	 * Get an unmodifiable copy of all values in the collection
+	 * 
+	 * @return all values
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized List<E> values() {
+		return Collections.unmodifiableList(Arrays.asList((E[]) Arrays.copyOf(values, size)));
+	}
+	
+	/**
+	 * Clear all data from the collection
+	 */
+	public synchronized void clear() {
+		Arrays.fill(values, 0, size, null);
+		Arrays.fill(weights, 0, size, 0.0);
+		Arrays.fill(tree, 0.0);
+		this.indices.clear();
+		this.size = 0;
+		this.updates = 0;
+	}
+	
+	/**
+	 * Check if this collection is completely empty and contains no entries
+	 * 
+	 * @return true if empty, false if elements exist
+	 */
+	public synchronized boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * Get the size of the collection
+	 * 
+	 * @return the collection size
+	 */
+	public synchronized int size() {
+		return size;
+	}
+	
+	private void updateWeight(int index, double weight) {
+		double delta = weight - weights[index];
+		this.weights[index] = weight;
+		
+		// Rebuilding once per capacity's worth of updates keeps error bounded at amortized O(1) cost
+		if (++updates >= tree.length) {
+			this.rebuildTree();
+			return;
+		}
+		
+		for (int i = index + 1; i < tree.length; i += i & -i) {
+			this.tree[i] += delta;
+		}
+	}
+	
+	private double prefixSum(int length) {
+		double sum = 0;
+		for (int i = length; i > 0; i -= i & -i) {
+			sum += tree[i];
+		}
+		
+		return sum;
+	}
+	
+	// Rebuild the tree from the weights in O(n), resetting accumulated rounding error
+	private void rebuildTree() {
+		this.tree = new double[weights.length + 1];
+		this.updates = 0;
+		for (int i = 1; i < tree.length; i++) {
+			this.tree[i] += weights[i - 1];
+			
+			int parent = i + (i & -i);
+			if (parent < tree.length) {
+				this.tree[parent] += tree[i];
+			}
+		}
+	}
+	
+}
\ No newline at end of file
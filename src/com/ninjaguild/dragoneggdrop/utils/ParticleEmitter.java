@@ -0,0 +1,299 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.ninjaguild.dragoneggdrop.management.ParticleBudgetManager;
+import com.ninjaguild.dragoneggdrop.versions.NMSAbstract;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+/**
+ * Emits a frame of particles surrounding a central point to the players able to see
+ * them. Recipients are resolved once per frame rather than once per particle, after
+ * which all particles are sent through {@link NMSAbstract#sendParticles(Collection,
+ * Particle, double[], double[], double[], int, int, double, double, double, double)}.
+ * <p>
+ * If no NMSAbstract is available, particles are instead spawned for each recipient
+ * individually, avoiding the world-wide player lookup of {@link World#spawnParticle(Particle,
+ * Location, int)} for every particle.
+ * <p>
+ * Optionally, recipients may be divided into levels of detail based on their distance to
+ * the emitted frame (see {@link #setLevelOfDetail(double, double, int)}), and
+ * limited by a server-wide budget (see {@link ParticleBudgetManager})
+ *
+ * @author Parker Hawke - 2008Choco
+ */
+public class ParticleEmitter {
+
+	/**
+	 * The distance from which clients display particles not flagged as long distance
+	 */
+	public static final double PARTICLE_RANGE = 32.0;
+
+	private final NMSAbstract nmsAbstract;
+
+	private final List<Player> recipients = new ArrayList<>(), thinnedRecipients = new ArrayList<>();
+	private final Location playerLocation = new Location(null, 0, 0, 0);
+	private double[] x = new double[0], y = new double[0], z = new double[0];
+	private double[] budgetX = new double[0], budgetY = new double[0], budgetZ = new double[0];
+	private int frame = 0;
+
+	private ParticleBudgetManager budget = null;
+
+	private boolean levelOfDetail = false;
+	private double fullRadius, viewRadius;
+	private int thinning = 1;
+	private int reduction = 1;
+
+	/**
+	 * Construct a new ParticleEmitter
+	 *
+	 * @param nmsAbstract the version adapter through which to send particles. Can be null
+	 */
+	public ParticleEmitter(NMSAbstract nmsAbstract) {
+		this.nmsAbstract = nmsAbstract;
+	}
+
+	/**
+	 * Set the level of detail at which players receive particles based on their distance to
+	 * the emitted frame, being the distance to its central point less the largest offset of
+	 * its particles. Players within the full radius receive every particle. Players within
+	 * the view radius receive only every nth particle of every nth frame, where n is the
+	 * thinning factor. Players beyond the view radius receive no particles. The view radius
+	 * is capped at {@link #PARTICLE_RANGE}, beyond which players receive no particles anyway
+	 *
+	 * @param fullRadius the radius in which to receive all particles
+	 * @param viewRadius the radius in which to receive a thinned subset of particles
+	 * @param thinning the thinning factor
+	 */
+	public void setLevelOfDetail(double fullRadius, double viewRadius, int thinning) {
+		Validate.isTrue(thinning > 0, "Thinning factor must be positive");
+
+		this.levelOfDetail = true;
+		this.fullRadius = Math.min(Math.max(fullRadius, 0), PARTICLE_RANGE);
+		this.viewRadius = Math.min(Math.max(this.fullRadius, viewRadius), PARTICLE_RANGE);
+		this.thinning = thinning;
+	}
+
+	/**
+	 * Set the factor by which to reduce the density of emitted frames. Only every nth
+	 * particle of each frame is emitted to any recipient
+	 *
+	 * @param reduction the reduction factor. 1 to emit every particle
+	 */
+	public void setReduction(int reduction) {
+		Validate.isTrue(reduction > 0, "Reduction factor must be positive");
+		this.reduction = reduction;
+	}
+
+	/**
+	 * Set the budget limiting the amount of particles sent by this emitter. This is
+	 * called when registering with a budget (see {@link ParticleBudgetManager#register(ParticleEmitter)})
+	 *
+	 * @param budget the budget. null if unlimited
+	 */
+	public void setBudget(ParticleBudgetManager budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Emit a frame of particles at the given offsets from a central point. Every call is
+	 * considered to be the next frame of an animation
+	 *
+	 * @param world the world in which to display the particles
+	 * @param particleType the type of particle to display
+	 * @param centerX the x coordinate of the central point
+	 * @param y the y coordinate of all particles
+	 * @param centerZ the z coordinate of the central point
+	 * @param xOffsets the x offset of each particle from the central point
+	 * @param zOffsets the z offset of each particle from the central point
+	 * @param length the amount of particles to read from the offset arrays
+	 * @param particleAmount the amount of particles to display at each location
+	 * @param xOffset the x offset for each particle
+	 * @param yOffset the y offset for each particle
+	 * @param zOffset the z offset for each particle
+	 * @param particleExtra the extra value of the particle (generally speed, though this is
+	 * dependent on the type of particle used)
+	 */
+	public void emit(World world, Particle particleType, double centerX, double y, double centerZ, double[] xOffsets, double[] zOffsets, int length,
+			int particleAmount, double xOffset, double yOffset, double zOffset, double particleExtra) {
+		Validate.notNull(world, "Cannot emit particles in a null world");
+		this.emit(world.getPlayers(), particleType, centerX, y, centerZ, xOffsets, null, zOffsets, length, particleAmount, xOffset, yOffset, zOffset, particleExtra);
+	}
+
+	/**
+	 * Emit a frame of particles at the given offsets from a central point to those of the
+	 * given players in range of the frame. Every call is considered to be the next frame of
+	 * an animation
+	 *
+	 * @param players the players that may receive the particles. All must be in the same world
+	 * @param particleType the type of particle to display
+	 * @param centerX the x coordinate of the central point
+	 * @param y the y coordinate of all particles
+	 * @param centerZ the z coordinate of the central point
+	 * @param xOffsets the x offset of each particle from the central point
+	 * @param zOffsets the z offset of each particle from the central point
+	 * @param length the amount of particles to read from the offset arrays
+	 * @param particleAmount the amount of particles to display at each location
+	 * @param xOffset the x offset for each particle
+	 * @param yOffset the y offset for each particle
+	 * @param zOffset the z offset for each particle
+	 * @param particleExtra the extra value of the particle (generally speed, though this is
+	 * dependent on the type of particle used)
+	 */
+	public void emit(Collection<? extends Player> players, Particle particleType, double centerX, double y, double centerZ, double[] xOffsets, double[] zOffsets,
+			int length, int particleAmount, double xOffset, double yOffset, double zOffset, double particleExtra) {
+		this.emit(players, particleType, centerX, y, centerZ, xOffsets, null, zOffsets, length, particleAmount, xOffset, yOffset, zOffset, particleExtra);
+	}
+
+	/**
+	 * Emit a frame of particles at the given three dimensional offsets from a central point
+	 * to those of the given players in range of the frame. Every call is considered to be the
+	 * next frame of an animation
+	 *
+	 * @param players the players that may receive the particles. All must be in the same world
+	 * @param particleType the type of particle to display
+	 * @param centerX the x coordinate of the central point
+	 * @param centerY the y coordinate of the central point
+	 * @param centerZ the z coordinate of the central point
+	 * @param xOffsets the x offset of each particle from the central point
+	 * @param yOffsets the y offset of each particle from the central point. null if all
+	 * particles are level with the central point
+	 * @param zOffsets the z offset of each particle from the central point
+	 * @param length the amount of particles to read from the offset arrays
+	 * @param particleAmount the amount of particles to display at each location
+	 * @param xOffset the x offset for each particle
+	 * @param yOffset the y offset for each particle
+	 * @param zOffset the z offset for each particle
+	 * @param particleExtra the extra value of the particle (generally speed, though this is
+	 * dependent on the type of particle used)
+	 */
+	public void emit(Collection<? extends Player> players, Particle particleType, double centerX, double centerY, double centerZ, double[] xOffsets, double[] yOffsets,
+			double[] zOffsets, int length, int particleAmount, double xOffset, double yOffset, double zOffset, double particleExtra) {
+		Validate.notNull(players, "Cannot emit particles to a null collection of players");
+		Validate.notNull(particleType, "Cannot spawn Particle of type null");
+
+		if (x.length < length) {
+			this.x = new double[length];
+			this.y = new double[length];
+			this.z = new double[length];
+		}
+
+		double maxOffsetSquared = 0;
+		int reducedLength = 0;
+		for (int i = 0; i < length; i += reduction, reducedLength++) {
+			double offsetY = (yOffsets != null ? yOffsets[i] : 0.0);
+
+			this.x[reducedLength] = centerX + xOffsets[i];
+			this.y[reducedLength] = centerY + offsetY;
+			this.z[reducedLength] = centerZ + zOffsets[i];
+			maxOffsetSquared = Math.max(maxOffsetSquared, xOffsets[i] * xOffsets[i] + offsetY * offsetY + zOffsets[i] * zOffsets[i]);
+		}
+		length = reducedLength;
+
+		// Any player within range of at least one particle is a recipient
+		this.recipients.clear();
+		this.thinnedRecipients.clear();
+		double maxOffset = Math.sqrt(maxOffsetSquared);
+		double range = PARTICLE_RANGE + maxOffset, rangeSquared = range * range;
+		double full = fullRadius + maxOffset, fullSquared = full * full;
+		double view = viewRadius + maxOffset, viewSquared = view * view;
+		for (Player player : players) {
+			player.getLocation(playerLocation);
+
+			double dx = playerLocation.getX() - centerX, dy = playerLocation.getY() - centerY, dz = playerLocation.getZ() - centerZ;
+			double distanceSquared = dx * dx + dy * dy + dz * dz;
+			if (distanceSquared > rangeSquared) continue;
+
+			if (!levelOfDetail || distanceSquared <= fullSquared) {
+				this.recipients.add(player);
+			} else if (distanceSquared <= viewSquared) {
+				this.thinnedRecipients.add(player);
+			}
+		}
+
+		this.send(recipients, particleType, length, particleAmount, xOffset, yOffset, zOffset, particleExtra);
+
+		// Thinned recipients receive every nth particle of every nth frame
+		if (!thinnedRecipients.isEmpty() && frame % thinning == 0) {
+			int thinnedLength = 0;
+			for (int i = 0; i < length; i += thinning, thinnedLength++) {
+				this.x[thinnedLength] = x[i];
+				this.y[thinnedLength] = y[i];
+				this.z[thinnedLength] = z[i];
+			}
+
+			this.send(thinnedRecipients, particleType, thinnedLength, particleAmount, xOffset, yOffset, zOffset, particleExtra);
+		}
+
+		this.frame++;
+	}
+
+	private void send(List<Player> recipients, Particle particleType, int length, int particleAmount, double xOffset, double yOffset, double zOffset, double particleExtra) {
+		if (recipients.isEmpty()) return;
+
+		double[] x = this.x, y = this.y, z = this.z;
+
+		// Evenly thin the frame to the amount of particles granted by the budget
+		if (budget != null) {
+			int points = budget.allocate(this, recipients.size(), length, particleAmount);
+			if (points <= 0) return;
+
+			if (points < length) {
+				if (budgetX.length < points) {
+					this.budgetX = new double[points];
+					this.budgetY = new double[points];
+					this.budgetZ = new double[points];
+				}
+
+				for (int i = 0; i < points; i++) {
+					int index = (int) ((long) i * length / points);
+					this.budgetX[i] = x[index];
+					this.budgetY[i] = y[index];
+					this.budgetZ[i] = z[index];
+				}
+
+				x = budgetX;
+				y = budgetY;
+				z = budgetZ;
+				length = points;
+			}
+		}
+
+		if (nmsAbstract != null) {
+			this.nmsAbstract.sendParticles(recipients, particleType, x, y, z, length, particleAmount, xOffset, yOffset, zOffset, particleExtra);
+		} else {
+			for (Player player : recipients) {
+				for (int i = 0; i < length; i++) {
+					player.spawnParticle(particleType, x[i], y[i], z[i], particleAmount, xOffset, yOffset, zOffset, particleExtra);
+				}
+			}
+		}
+	}
+
+}
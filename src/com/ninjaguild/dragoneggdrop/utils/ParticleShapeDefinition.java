@@ -19,9 +19,7 @@
 
 package com.ninjaguild.dragoneggdrop.utils;
 
-import java.util.HashMap;
-import java.util.Map;
-
+import com.ninjaguild.dragoneggdrop.utils.math.ExpressionCache;
 import com.ninjaguild.dragoneggdrop.utils.math.MathExpression;
 import com.ninjaguild.dragoneggdrop.utils.math.MathUtils;
 
@@ -29,6 +27,7 @@ import org.apache.commons.lang.Validate;
 import org.bukkit.Location;
 import org.bukkit.Particle;
 import org.bukkit.World;
+import org.bukkit.configuration.file.FileConfiguration;
 
 /**
  * Represents a defined particle shape. Allows for easy shape-creation with two
@@ -39,7 +38,13 @@ import org.bukkit.World;
  */
 public class ParticleShapeDefinition {
 	
-	private final Map<String, Double> variables = new HashMap<>();
+	private static final String[] VARIABLES = { "x", "z", "t", "theta" };
+	private static final int THETA_SLOT = 3;
+	
+	// Variable values, indexed in the same order as VARIABLES
+	private final double[] variables = new double[VARIABLES.length];
+	private double[] xResults = new double[1], zResults = new double[1];
+	private final ParticleEmitter emitter = new ParticleEmitter(null);
 	
 	private final Location initialLocation;
 	private final World world;
@@ -52,21 +57,52 @@ public class ParticleShapeDefinition {
 	 * @param initialLocation the initial starting location
 	 * @param xExpression the expression for the x axis
 	 * @param zExpression the expression for the y axis
+	 * @param fastMath whether to approximate trigonometric functions with lookup tables or not.
+	 * See {@link com.ninjaguild.dragoneggdrop.utils.math.FastTrigonometry}
+	 * @param cache the cache from which to retrieve parsed expressions. If null, expressions
+	 * will be parsed directly
 	 */
-	public ParticleShapeDefinition(Location initialLocation, String xExpression, String zExpression) {
+	public ParticleShapeDefinition(Location initialLocation, String xExpression, String zExpression, boolean fastMath, ExpressionCache cache) {
 		Validate.notNull(initialLocation, "Null initial locations are not supported");
 		Validate.notEmpty(xExpression, "The x axis expression cannot be null or empty");
 		Validate.notEmpty(zExpression, "The z axis expression cannot be null or empty");
 		
-		this.variables.put("x", 0.0);
-		this.variables.put("z", 0.0);
-		this.variables.put("t", 0.0);
-		this.variables.put("theta", 0.0);
-		
 		this.initialLocation = initialLocation;
 		this.world = initialLocation.getWorld();
-		this.xExpression = MathUtils.parseExpression(xExpression, variables);
-		this.zExpression = MathUtils.parseExpression(zExpression, variables);
+		
+		if (cache != null) {
+			this.xExpression = cache.getExpression(xExpression, fastMath, VARIABLES);
+			this.zExpression = cache.getExpression(zExpression, fastMath, VARIABLES);
+		} else {
+			this.xExpression = MathUtils.parseExpression(xExpression, fastMath, VARIABLES);
+			this.zExpression = MathUtils.parseExpression(zExpression, fastMath, VARIABLES);
+		}
+	}
+	
+	/**
+	 * Construct a new ParticleShapeDefinition with a given location, and mathmatical equations
+	 * for both the x and z axis
+	 * 
+	 * @param initialLocation the initial starting location
+	 * @param xExpression the expression for the x axis
+	 * @param zExpression the expression for the y axis
+	 * @param fastMath whether to approximate trigonometric functions with lookup tables or not.
+	 * See {@link com.ninjaguild.dragoneggdrop.utils.math.FastTrigonometry}
+	 */
+	public ParticleShapeDefinition(Location initialLocation, String xExpression, String zExpression, boolean fastMath) {
+		this(initialLocation, xExpression, zExpression, fastMath, null);
+	}
+	
+	/**
+	 * Construct a new ParticleShapeDefinition with a given location, and mathmatical equations
+	 * for both the x and z axis
+	 * 
+	 * @param initialLocation the initial starting location
+	 * @param xExpression the expression for the x axis
+	 * @param zExpression the expression for the y axis
+	 */
+	public ParticleShapeDefinition(Location initialLocation, String xExpression, String zExpression) {
+		this(initialLocation, xExpression, zExpression, false);
 	}
 	
 	/**
@@ -78,10 +114,10 @@ public class ParticleShapeDefinition {
 	 * @param theta the new theta value
 	 */
 	public void updateVariables(double x, double z, double t, double theta) {
-		this.variables.put("x", x);
-		this.variables.put("z", z);
-		this.variables.put("t", t);
-		this.variables.put("theta", theta);
+		this.variables[0] = x;
+		this.variables[1] = z;
+		this.variables[2] = t;
+		this.variables[3] = theta;
 	}
 	
 	/**
@@ -99,10 +135,83 @@ public class ParticleShapeDefinition {
 	public void executeExpression(Particle particleType, int particleAmount, double xOffset, double yOffset, double zOffset, double particleExtra) {
 		Validate.notNull(particleType, "Cannot spawn Particle of type null");
 		
-		double x = this.xExpression.evaluate(), z = this.zExpression.evaluate();
+		this.xResults[0] = this.xExpression.evaluate(variables);
+		this.zResults[0] = this.zExpression.evaluate(variables);
+		
+		this.emitter.emit(world, particleType, initialLocation.getX(), initialLocation.getY(), initialLocation.getZ(), xResults, zResults, 1,
+				particleAmount, xOffset, yOffset, zOffset, particleExtra);
+	}
+	
+	/**
+	 * Execute the particle shape definition expressions once for every provided value of
+	 * theta, with all other variables taken from their current values. Expressions are
+	 * evaluated for all values at once before any particles are displayed. To update values,
+	 * see {@link #updateVariables(double, double, double, double)}
+	 * 
+	 * @param theta the values of theta for which to display particles
+	 * @param particleType the type of particle to display
+	 * @param particleAmount the amount of particles to display
+	 * @param xOffset the x offset for each particle
+	 * @param yOffset the y offset for each particle
+	 * @param zOffset the z offset for each particle
+	 * @param particleExtra the extra value of the particle (generally speed, though this is
+	 * dependent on the type of particle used)
+	 */
+	public void executeExpression(double[] theta, Particle particleType, int particleAmount, double xOffset, double yOffset, double zOffset, double particleExtra) {
+		Validate.notNull(theta, "Theta values cannot be null");
+		Validate.notNull(particleType, "Cannot spawn Particle of type null");
+		
+		if (xResults.length < theta.length) {
+			this.xResults = new double[theta.length];
+			this.zResults = new double[theta.length];
+		}
+		
+		this.evaluate(theta, xResults, zResults);
+		this.emitter.emit(world, particleType, initialLocation.getX(), initialLocation.getY(), initialLocation.getZ(), xResults, zResults, theta.length,
+				particleAmount, xOffset, yOffset, zOffset, particleExtra);
+	}
+	
+	/**
+	 * Evaluate the x and z axis expressions once for every provided value of theta, with
+	 * all other variables taken from their current values. No particles are displayed. To
+	 * update values, see {@link #updateVariables(double, double, double, double)}
+	 * 
+	 * @param theta the values of theta for which to evaluate the expressions
+	 * @param xResults the array in which to store the x axis results
+	 * @param zResults the array in which to store the z axis results
+	 */
+	public void evaluate(double[] theta, double[] xResults, double[] zResults) {
+		this.xExpression.evaluateBatch(variables, THETA_SLOT, theta, xResults);
+		this.zExpression.evaluateBatch(variables, THETA_SLOT, theta, zResults);
+	}
+	
+	/**
+	 * Create a ParticleShapeDefinition from the "Particles.Advanced" section of the
+	 * given configuration, resolving preset shapes to their expressions
+	 * 
+	 * @param config the configuration to read
+	 * @param initialLocation the initial starting location
+	 * @param cache the cache from which to retrieve parsed expressions. Can be null
+	 * 
+	 * @return the configured particle shape
+	 */
+	public static ParticleShapeDefinition fromConfig(FileConfiguration config, Location initialLocation, ExpressionCache cache) {
+		String shape = config.getString("Particles.Advanced.preset-shape");
+		String xCoordExpressionString = config.getString("Particles.Advanced.x-coord-expression");
+		String zCoordExpressionString = config.getString("Particles.Advanced.z-coord-expression");
+		boolean fastMath = config.getBoolean("Particles.Advanced.fast-math", false);
 		
-		this.initialLocation.add(x, 0, z);
-		this.world.spawnParticle(particleType, this.initialLocation, particleAmount, xOffset, yOffset, zOffset, particleExtra, null);
-		this.initialLocation.subtract(x, 0, z);
+		if (shape.equalsIgnoreCase("BALL")) {
+			return new ParticleShapeDefinition(initialLocation, "x", "z", fastMath, cache);
+		}
+		else if (shape.equalsIgnoreCase("HELIX")) {
+			return new ParticleShapeDefinition(initialLocation, "cos(theta) * 1.2", "sin(theta) * 1.2", fastMath, cache);
+		}
+		else if (shape.equalsIgnoreCase("OPEN_END_HELIX")) {
+			return new ParticleShapeDefinition(initialLocation, "cos(theta) * (100 / t)", "sin(theta) * (100 / t)", fastMath, cache);
+		}
+		else { // CUSTOM or default
+			return new ParticleShapeDefinition(initialLocation, xCoordExpressionString, zCoordExpressionString, fastMath, cache);
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,293 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+import com.ninjaguild.dragoneggdrop.utils.math.ExpressionCache;
+
+import org.bukkit.Location;
+import org.bukkit.configuration.file.FileConfiguration;
+
+/**
+ * Represents the precomputed particle offsets of a death animation. Every frame of the
+ * configured particle shape is evaluated once when the trajectory is baked, after which
+ * an animation need only read the x and z offsets of each particle stream rather than
+ * evaluate expressions every tick.
+ * <p>
+ * Offsets are stored as a compact array of floats, two per stream per frame. Large
+ * trajectories may optionally be persisted to a file which is memory-mapped when loaded,
+ * allowing the offsets to be reused across restarts without being held on the heap.
+ * <p>
+ * Because shapes may depend on the x and z coordinates of the portal, a trajectory is
+ * only applicable to animations taking place at the origin for which it was baked (see
+ * {@link #isApplicable(double, double)})
+ *
+ * @author Parker Hawke - 2008Choco
+ */
+public final class ParticleTrajectory {
+
+	/**
+	 * The maximum amount of frames to bake. One hour at an interval of one tick
+	 */
+	public static final int MAX_FRAMES = 72000;
+
+	/**
+	 * The maximum amount of offsets to bake across all frames and streams (8 MB of floats).
+	 * Longer animations are evaluated as they play instead
+	 */
+	public static final int MAX_OFFSETS = 1 << 21;
+
+	private static final int MAGIC = 0x44454454; // "DEDT"
+	private static final int HEADER_SIZE = 20; // magic, key, frames, streams
+
+	private final FloatBuffer offsets;
+	private final int frames, streams;
+	private final double originX, originZ;
+
+	private ParticleTrajectory(FloatBuffer offsets, int frames, int streams, double originX, double originZ) {
+		this.offsets = offsets;
+		this.frames = frames;
+		this.streams = streams;
+		this.originX = originX;
+		this.originZ = originZ;
+	}
+
+	/**
+	 * Get the amount of baked frames
+	 *
+	 * @return the amount of frames
+	 */
+	public int getFrameCount() {
+		return frames;
+	}
+
+	/**
+	 * Get the amount of particle streams per frame
+	 *
+	 * @return the amount of streams
+	 */
+	public int getStreamCount() {
+		return streams;
+	}
+
+	/**
+	 * Get the x offset of a particle stream relative to the animation's location
+	 *
+	 * @param frame the frame, starting at 0 for the first tick of the animation
+	 * @param stream the stream
+	 *
+	 * @return the x offset
+	 */
+	public double getX(int frame, int stream) {
+		return offsets.get((frame * streams + stream) << 1);
+	}
+
+	/**
+	 * Get the z offset of a particle stream relative to the animation's location
+	 *
+	 * @param frame the frame, starting at 0 for the first tick of the animation
+	 * @param stream the stream
+	 *
+	 * @return the z offset
+	 */
+	public double getZ(int frame, int stream) {
+		return offsets.get(((frame * streams + stream) << 1) + 1);
+	}
+
+	/**
+	 * Check whether this trajectory may be replayed for an animation taking place at
+	 * the given x and z coordinates
+	 *
+	 * @param x the x coordinate of the animation
+	 * @param z the z coordinate of the animation
+	 *
+	 * @return true if applicable, false otherwise
+	 */
+	public boolean isApplicable(double x, double z) {
+		return Double.compare(x, originX) == 0 && Double.compare(z, originZ) == 0;
+	}
+
+	/**
+	 * Advance theta across all particle streams of a single frame. Each stream is offset
+	 * from the previous by the stream interval. If the interval is a full rotation, only a
+	 * single stream is displayed at the current theta
+	 *
+	 * @param theta the current value of theta
+	 * @param streamInterval the interval in degrees between each stream
+	 * @param thetas the array in which to store the theta of each stream
+	 *
+	 * @return the new value of theta
+	 */
+	public static double advanceTheta(double theta, int streamInterval, double[] thetas) {
+		if (streamInterval < 360) {
+			for (int i = 0; i < thetas.length; i++) {
+				theta += streamInterval;
+				thetas[i] = theta;
+			}
+		} else {
+			thetas[0] = theta;
+		}
+
+		return theta;
+	}
+
+	/**
+	 * Bake the particle trajectory described by the "Particles" section of the given
+	 * configuration for an animation at the given origin
+	 *
+	 * @param config the configuration to read
+	 * @param cache the cache from which to retrieve parsed expressions. Can be null
+	 * @param originX the x coordinate of the animation
+	 * @param originZ the z coordinate of the animation
+	 * @param cacheFile the file in which to persist the trajectory. If the file holds a
+	 * trajectory baked from the same configuration, it is loaded rather than baked. Can be
+	 * null, in which case the trajectory is held in memory only
+	 *
+	 * @return the baked trajectory. null if the configured animation has no bound on its
+	 * amount of frames, exceeds {@link #MAX_FRAMES} or more than {@link #MAX_OFFSETS}
+	 */
+	public static ParticleTrajectory bake(FileConfiguration config, ExpressionCache cache, double originX, double originZ, File cacheFile) {
+		double multiplier = config.getDouble("Particles.speed-multiplier", 0.0D);
+		double startY = config.getDouble("Particles.egg-start-y");
+		int streamInterval = 360 / Math.max(1, config.getInt("Particles.stream-count"));
+		if (multiplier <= 0 || startY <= 0 || startY * multiplier >= MAX_FRAMES) return null;
+
+		// The animation cannot descend below y = 0 without having found bedrock
+		int frames = (int) Math.ceil(startY * multiplier);
+		int streams = (359 / streamInterval) + 1;
+		if ((long) frames * streams * 2 > MAX_OFFSETS) return null;
+
+		int length = frames * streams * 2;
+
+		long key = hash(config.getString("Particles.Advanced.preset-shape") + '|' + config.getString("Particles.Advanced.x-coord-expression")
+			+ '|' + config.getString("Particles.Advanced.z-coord-expression") + '|' + config.getBoolean("Particles.Advanced.fast-math", false)
+			+ '|' + streamInterval + '|' + multiplier + '|' + startY + '|' + originX + '|' + originZ);
+
+		if (cacheFile != null) {
+			FloatBuffer offsets = readCache(cacheFile, key, frames, streams, length);
+			if (offsets != null) {
+				return new ParticleTrajectory(offsets, frames, streams, originX, originZ);
+			}
+		}
+
+		ParticleShapeDefinition shape = ParticleShapeDefinition.fromConfig(config, new Location(null, originX, startY, originZ), cache);
+		double[] thetas = new double[streams], xResults = new double[streams], zResults = new double[streams];
+		Consumer<FloatBuffer> baker = offsets -> {
+			// Mirrors the progression of DragonDeathRunnable
+			double theta = 0;
+			for (int frame = 0; frame < frames; frame++) {
+				theta = advanceTheta(theta + 5, streamInterval, thetas);
+				shape.updateVariables(originX, originZ, frame + 1, theta);
+				shape.evaluate(thetas, xResults, zResults);
+
+				for (int stream = 0; stream < streams; stream++) {
+					offsets.put((float) xResults[stream]).put((float) zResults[stream]);
+				}
+			}
+		};
+
+		FloatBuffer offsets = (cacheFile != null ? writeCache(cacheFile, key, frames, streams, length, baker) : null);
+		if (offsets == null) {
+			offsets = FloatBuffer.allocate(length);
+			baker.accept(offsets);
+		}
+
+		return new ParticleTrajectory(offsets.asReadOnlyBuffer(), frames, streams, originX, originZ);
+	}
+
+	private static FloatBuffer readCache(File file, long key, int frames, int streams, int length) {
+		if (!file.isFile() || file.length() != HEADER_SIZE + (length * 4L)) return null;
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, file.length());
+			if (buffer.getInt() != MAGIC || buffer.getLong() != key || buffer.getInt() != frames || buffer.getInt() != streams) {
+				return null;
+			}
+
+			return buffer.slice().asFloatBuffer();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	// Bake directly into a mapped temporary file. null if it could not be written, in which case the trajectory is baked on the heap
+	private static FloatBuffer writeCache(File file, long key, int frames, int streams, int length, Consumer<FloatBuffer> baker) {
+		file.getParentFile().mkdirs();
+
+		// Trajectories may still be mapped from the existing file, so it is replaced rather than truncated
+		Path target = file.toPath(), temp = null;
+		boolean moved = false;
+		try {
+			temp = Files.createTempFile(target.getParent(), file.getName(), ".tmp");
+
+			FloatBuffer offsets;
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE + (length * 4L));
+				buffer.putInt(MAGIC).putLong(key).putInt(frames).putInt(streams);
+				offsets = buffer.slice().asFloatBuffer();
+				baker.accept(offsets);
+				buffer.force();
+			}
+
+			try {
+				Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			moved = true;
+			return offsets;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			try {
+				if (!moved && temp != null) Files.deleteIfExists(temp);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	// 64 bit FNV-1a
+	private static long hash(String string) {
+		long hash = 0xCBF29CE484222325L;
+		for (int i = 0; i < string.length(); i++) {
+			hash ^= string.charAt(i);
+			hash *= 0x100000001B3L;
+		}
+
+		return hash;
+	}
+
+}
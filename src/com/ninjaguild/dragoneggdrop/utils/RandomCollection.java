@@ -19,27 +19,45 @@
 
 package com.ninjaguild.dragoneggdrop.utils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.Random;
-import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.apache.commons.lang.Validate;
 
 /**
  * An implementation of a Collection based on a TreeMap. The goal of
  * the RandomCollection is to simplify the process of retrieving a
- * random object based on its mapped weight
+ * random object based on its mapped weight.
+ * <p>
+ * Once a collection stops changing, its entries are compiled into alias tables
+ * (see {@link #compile()}) such that each call to {@link #next()} runs in constant
+ * time rather than searching the underlying TreeMap. Those same tables back the
+ * immutable {@link Snapshot} of the collection (see {@link #snapshot()}).
+ * <p>
+ * Modifications are synchronized, and objects and values are read from the compiled tables
+ * without locking. Collections created with {@link #concurrent()} additionally draw from the calling
+ * thread's {@link ThreadLocalRandom}, such that they may be sampled from any thread without
+ * contention
  * 
  * @param <E> - The type of object to be stored in the Collection
  */
 public class RandomCollection<E> {
 	
     private final NavigableMap<Double, E> map = new TreeMap<Double, E>();
-    private final Random random;
+    private final Random random; // null if drawing from ThreadLocalRandom
     private double total = 0;
+    
+    // Replaced as a whole when compiled such that draws need not lock. null until compiled
+    private volatile AliasTable table;
+    private volatile Snapshot<E> snapshot;
 
     /**
      * Construct a new RandomCollection with a new Random object
@@ -57,6 +75,32 @@ public class RandomCollection<E> {
     	Validate.notNull(random, "Random instance must not be null");
         this.random = random;
     }
+    
+    private RandomCollection(Random random, boolean concurrent) {
+    	this.random = (concurrent ? null : random);
+    }
+    
+    /**
+     * Construct a new RandomCollection safe to draw from on any thread. Objects are drawn
+     * using the calling thread's {@link ThreadLocalRandom} rather than a shared Random
+     * 
+     * @return the concurrent collection
+     * 
+     * @param <E> - The type of object to be stored in the Collection
+     */
+    public static <E> RandomCollection<E> concurrent() {
+    	return new RandomCollection<>(null, true);
+    }
+    
+    /**
+     * Check whether this collection draws from the calling thread's {@link ThreadLocalRandom}
+     * rather than a shared Random
+     * 
+     * @return true if concurrent
+     */
+    public boolean isConcurrent() {
+    	return random == null;
+    }
 
     /**
      * Add a new object to the collection with a given weighted random
@@ -66,64 +110,55 @@ public class RandomCollection<E> {
      * 
      * @return true if successfully added, false if an invalid weight was provided
      */
-    public boolean add(double weight, E result) {
+    public synchronized boolean add(double weight, E result) {
         if (weight <= 0.0D) {
         	return false;
         }
         
         total += weight;
         map.put(total, result);
+        this.invalidate();
         
         return true;
     }
     
     /**
-     * Add all elements of another RandomCollection
+     * Add all elements of another RandomCollection with their respective weights
      * 
      * @param collection the collection to add
      */
+    @SuppressWarnings("unchecked")
     public void addAll(RandomCollection<E> collection) {
-    	for (double d : collection.keySet()) {
-    		add(d, collection.get(d));
+    	Validate.notNull(collection, "Cannot add a null collection");
+    	
+    	// Read from the other collection's immutable tables rather than its map
+    	AliasTable other = collection.table();
+    	synchronized (this) {
+    		for (int i = 0; i < other.values.length; i++) {
+    			this.add(other.weights[i], (E) other.values[i]);
+    		}
     	}
     }
     
-    /**
-     * Get an object based on its total weight upon injection
-     * 
-     * @param key the total weight at the time of injection
-     * @return the object, or null if not found
-     */
-    private E get(Object key) {
-		return map.get(key);
-	}
-    
     /**
      * Check whether this collection contains a specific value
      * 
      * @param value whether the value to check for
      * @return true if the collection contains the value. false otherwise
      */
-    public boolean contains(Object value) {
+    public synchronized boolean contains(Object value) {
     	return map.containsValue(value);
     }
-
-    /**
-     * Get a Set of all keys in the underlying TreeMap
-     * 
-     * @return all key values
-     */
-	private Set<Double> keySet() {
-    	return map.keySet();
-    }
 	
 	/**
-	 * Get a Collection of all values in the underlying TreeMap
+	 * Get an unmodifiable Collection of all values in this collection, in the order in
+	 * which they were added. The values are read from the current {@link #snapshot()}
+	 * and do not reflect later modifications
 	 * 
 	 * @return get all values in the collection
 	 */
 	public Collection<E> values() {
-		return map.values();
+		return snapshot().values();
 	}
 
 	/**
@@ -132,19 +167,111 @@ public class RandomCollection<E> {
 	 * 
 	 * @return a random weighted object
 	 */
+    @SuppressWarnings("unchecked")
     public E next() {
-        double value = random.nextDouble() * total;
-        Entry<Double, E> entry = map.ceilingEntry(value);
-        
-        return (entry != null ? entry.getValue() : null);
+    	return (E) table().draw(random());
+    }
+    
+    /**
+     * Retrieve a number of random objects in the collection based on their weighted
+     * values. Objects may be retrieved more than once
+     * 
+     * @param amount the amount of objects to retrieve
+     * @return the random weighted objects. Empty if the collection is empty
+     */
+    public List<E> next(int amount) {
+    	return table().draw(amount, random());
+    }
+    
+    /**
+     * Retrieve a number of random objects in the collection based on their weighted
+     * values, drawn from the given Random rather than that of this collection
+     * 
+     * @param amount the amount of objects to retrieve
+     * @param random the Random from which to draw
+     * @return the random weighted objects. Empty if the collection is empty
+     */
+    public List<E> next(int amount, Random random) {
+    	Validate.notNull(random, "Random instance must not be null");
+    	return table().draw(amount, random);
+    }
+    
+    /**
+     * Retrieve a number of distinct random objects in the collection based on their
+     * weighted values (weighted random sampling without replacement). Objects are
+     * returned in the order in which they were drawn
+     * 
+     * @param amount the amount of objects to retrieve
+     * @return the random weighted objects. Contains every object in the collection if
+     * the amount exceeds its size
+     */
+    public List<E> nextUnique(int amount) {
+    	return table().drawUnique(amount, random());
+    }
+    
+    /**
+     * Retrieve a number of distinct random objects in the collection based on their
+     * weighted values, drawn from the given Random rather than that of this collection
+     * 
+     * @param amount the amount of objects to retrieve
+     * @param random the Random from which to draw
+     * @return the random weighted objects. Contains every object in the collection if
+     * the amount exceeds its size
+     */
+    public List<E> nextUnique(int amount, Random random) {
+    	Validate.notNull(random, "Random instance must not be null");
+    	return table().drawUnique(amount, random);
+    }
+    
+    /**
+     * Compile the current entries of this collection into alias tables from which
+     * objects are drawn in constant time. This is done implicitly by {@link #next()}
+     * after the collection has been modified, though may be called once a collection
+     * is fully populated in order to do so ahead of time
+     */
+    public void compile() {
+    	this.table();
+    }
+    
+    /**
+     * Check whether the current entries of this collection have been compiled into
+     * alias tables or not
+     * 
+     * @return true if compiled, false if the next draw will compile them
+     */
+    public boolean isCompiled() {
+    	return table != null;
+    }
+    
+    /**
+     * Get an immutable snapshot of the current entries of this collection. The snapshot
+     * shares this collection's compiled tables rather than copying its entries, and the
+     * same snapshot is returned until this collection is next modified. Modifications
+     * made afterwards are not reflected in the snapshot
+     * 
+     * @return the snapshot
+     */
+    public Snapshot<E> snapshot() {
+    	Snapshot<E> snapshot = this.snapshot;
+    	if (snapshot == null) {
+    		synchronized (this) {
+    			snapshot = this.snapshot;
+    			if (snapshot == null) {
+    				this.snapshot = snapshot = new Snapshot<>(table(), random);
+    			}
+    		}
+    	}
+    	
+    	return snapshot;
     }
     
     /**
      * Clear all data from the random collection
      */
-    public void clear() {
+    public synchronized void clear() {
     	this.map.clear();
     	this.total = 0;
+    	this.invalidate();
     }
     
     /**
@@ -152,7 +279,7 @@ public class RandomCollection<E> {
      * 
      * @return true if empty, false if elements exist
      */
-    public boolean isEmpty() {
+    public synchronized boolean isEmpty() {
     	return map.isEmpty();
     }
     
@@ -161,22 +288,81 @@ public class RandomCollection<E> {
      * 
      * @return the collection size
      */
-    public int size() {
+    public synchronized int size() {
     	return map.size();
     }
 	
 	/**
 	 * Get the values of this random collection as an iterable java.util.Collection 
-	 * object for easy manoeuvrability
+	 * object for easy manoeuvrability. The values are read from the current
+	 * {@link #snapshot()} and may safely be iterated while the collection is modified
 	 * 
 	 * @return the resulting collection
 	 */
 	public Collection<E> toCollection() {
-		return map.values();
+		return snapshot().values();
 	}
     
+    private void invalidate() {
+    	this.table = null;
+    	this.snapshot = null;
+    }
+    
+    private Random random() {
+    	return (random != null ? random : ThreadLocalRandom.current());
+    }
+    
+    private AliasTable table() {
+    	AliasTable table = this.table;
+    	if (table == null) {
+    		synchronized (this) {
+    			table = this.table;
+    			if (table == null) {
+    				this.table = table = new AliasTable(map, total);
+    			}
+    		}
+    	}
+    	
+    	return table;
+    }
+    
+    // Insert into a min-heap of keys at the given position
+    private static void siftUp(int[] heap, double[] keys, int position, int index, double key) {
+    	while (position > 0) {
+    		int parent = (position - 1) >>> 1;
+    		if (keys[parent] <= key) break;
+    		
+    		heap[position] = heap[parent];
+    		keys[position] = keys[parent];
+    		position = parent;
+    	}
+    	
+    	heap[position] = index;
+    	keys[position] = key;
+    }
+    
+    // Replace the root of a min-heap of keys of the given size
+    private static void siftDown(int[] heap, double[] keys, int size, int index, double key) {
+    	int position = 0;
+    	while (true) {
+    		int child = (position << 1) + 1;
+    		if (child >= size) break;
+    		if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+    		if (key <= keys[child]) break;
+    		
+    		heap[position] = heap[child];
+    		keys[position] = keys[child];
+    		position = child;
+    	}
+    	
+    	if (position < size) {
+    		heap[position] = index;
+    		keys[position] = key;
+    	}
+    }
+    
     /**
-     * Copy a RandomCollection with identical elements and Random instance
+     * Copy a RandomCollection with identical elements, weights and Random instance
      * 
      * @param toCopy the collection to copy
      * @return the collection copy
@@ -186,9 +372,252 @@ public class RandomCollection<E> {
     public static <E> RandomCollection<E> copyOf(RandomCollection<E> toCopy) {
     	Validate.notNull(toCopy, "Cannot copy a null collection");
     	
-    	RandomCollection<E> result = new RandomCollection<E>(toCopy.random);
+    	RandomCollection<E> result = new RandomCollection<E>(toCopy.random, toCopy.isConcurrent());
     	result.addAll(toCopy);
     	return result;
     }
     
+    /**
+     * An immutable view of the entries of a RandomCollection at the time it was taken
+     * (see {@link RandomCollection#snapshot()}). Objects are drawn exactly as they would
+     * have been from the collection itself
+     * 
+     * @param <E> - The type of object stored in the Snapshot
+     */
+    public static final class Snapshot<E> {
+    	
+    	private final AliasTable table;
+    	private final Random random; // null if drawing from ThreadLocalRandom
+    	private final List<E> values;
+    	
+    	@SuppressWarnings("unchecked")
+    	private Snapshot(AliasTable table, Random random) {
+    		this.table = table;
+    		this.random = random;
+    		this.values = Collections.unmodifiableList(Arrays.asList((E[]) table.values));
+    	}
+    	
+    	/**
+    	 * Retrieve the next object, being a random object in the snapshot
+    	 * based on its weighted value
+    	 * 
+    	 * @return a random weighted object. null if empty
+    	 */
+    	@SuppressWarnings("unchecked")
+    	public E next() {
+    		return (E) table.draw(random());
+    	}
+    	
+    	/**
+    	 * Retrieve a number of random objects in the snapshot based on their weighted
+    	 * values. Objects may be retrieved more than once
+    	 * 
+    	 * @param amount the amount of objects to retrieve
+    	 * @return the random weighted objects. Empty if the snapshot is empty
+    	 */
+    	public List<E> next(int amount) {
+    		return table.draw(amount, random());
+    	}
+    	
+    	/**
+    	 * Retrieve a number of random objects in the snapshot based on their weighted
+    	 * values, drawn from the given Random
+    	 * 
+    	 * @param amount the amount of objects to retrieve
+    	 * @param random the Random from which to draw
+    	 * @return the random weighted objects. Empty if the snapshot is empty
+    	 */
+    	public List<E> next(int amount, Random random) {
+    		Validate.notNull(random, "Random instance must not be null");
+    		return table.draw(amount, random);
+    	}
+    	
+    	/**
+    	 * Retrieve a number of distinct random objects in the snapshot based on their
+    	 * weighted values (weighted random sampling without replacement)
+    	 * 
+    	 * @param amount the amount of objects to retrieve
+    	 * @return the random weighted objects. Contains every object in the snapshot if
+    	 * the amount exceeds its size
+    	 */
+    	public List<E> nextUnique(int amount) {
+    		return table.drawUnique(amount, random());
+    	}
+    	
+    	/**
+    	 * Retrieve a number of distinct random objects in the snapshot based on their
+    	 * weighted values, drawn from the given Random
+    	 * 
+    	 * @param amount the amount of objects to retrieve
+    	 * @param random the Random from which to draw
+    	 * @return the random weighted objects. Contains every object in the snapshot if
+    	 * the amount exceeds its size
+    	 */
+    	public List<E> nextUnique(int amount, Random random) {
+    		Validate.notNull(random, "Random instance must not be null");
+    		return table.drawUnique(amount, random);
+    	}
+    	
+    	/**
+    	 * Get the weight of the object at the given position in {@link #values()}
+    	 * 
+    	 * @param index the index of the object
+    	 * @return the object's weight
+    	 */
+    	public double getWeight(int index) {
+    		return table.weights[index];
+    	}
+    	
+    	/**
+    	 * Check whether this snapshot contains a specific value
+    	 * 
+    	 * @param value the value to check for
+    	 * @return true if the snapshot contains the value. false otherwise
+    	 */
+    	public boolean contains(Object value) {
+    		return values.contains(value);
+    	}
+    	
+    	/**
+    	 * Get an unmodifiable list of all values in this snapshot, in the order in which
+    	 * they were added to the collection
+    	 * 
+    	 * @return all values
+    	 */
+    	public List<E> values() {
+    		return values;
+    	}
+    	
+    	/**
+    	 * Check if this snapshot contains no entries
+    	 * 
+    	 * @return true if empty, false if elements exist
+    	 */
+    	public boolean isEmpty() {
+    		return values.isEmpty();
+    	}
+    	
+    	/**
+    	 * Get the size of this snapshot
+    	 * 
+    	 * @return the snapshot size
+    	 */
+    	public int size() {
+    		return values.size();
+    	}
+    	
+    	private Random random() {
+    		return (random != null ? random : ThreadLocalRandom.current());
+    	}
+    	
+    }
+    
+    /*
+     * Tables of Vose's alias method. Immutable once constructed
+     */
+    private static final class AliasTable {
+    	
+    	private final double[] weights, probabilities;
+    	private final int[] aliases;
+    	private final Object[] values;
+    	
+    	private AliasTable(NavigableMap<Double, ?> map, double total) {
+    		int size = map.size();
+    		this.weights = new double[size];
+    		this.probabilities = new double[size];
+    		this.aliases = new int[size];
+    		this.values = new Object[size];
+    		
+    		// Weights scaled such that their average is 1
+    		double[] scaled = new double[size];
+    		double previous = 0;
+    		int index = 0;
+    		for (Entry<Double, ?> entry : map.entrySet()) {
+    			this.weights[index] = entry.getKey() - previous;
+    			scaled[index] = weights[index] * size / total;
+    			this.values[index++] = entry.getValue();
+    			previous = entry.getKey();
+    		}
+    		
+    		// Worklists of indices below and above the average, used as stacks
+    		int[] small = new int[size], large = new int[size];
+    		int smallSize = 0, largeSize = 0;
+    		for (int i = 0; i < size; i++) {
+    			if (scaled[i] < 1.0) small[smallSize++] = i;
+    			else large[largeSize++] = i;
+    		}
+    		
+    		while (smallSize > 0 && largeSize > 0) {
+    			int less = small[--smallSize], more = large[--largeSize];
+    			
+    			this.probabilities[less] = scaled[less];
+    			this.aliases[less] = more;
+    			
+    			scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+    			if (scaled[more] < 1.0) small[smallSize++] = more;
+    			else large[largeSize++] = more;
+    		}
+    		
+    		// Any remaining entries are (up to rounding error) exactly average
+    		while (largeSize > 0) this.probabilities[large[--largeSize]] = 1.0;
+    		while (smallSize > 0) this.probabilities[small[--smallSize]] = 1.0;
+    	}
+    	
+    	private Object draw(Random random) {
+    		if (values.length == 0) return null;
+    		
+    		int index = random.nextInt(values.length);
+    		return values[random.nextDouble() < probabilities[index] ? index : aliases[index]];
+    	}
+    	
+    	@SuppressWarnings("unchecked")
+    	private <E> List<E> draw(int amount, Random random) {
+    		Validate.isTrue(amount >= 0, "Amount of objects must not be negative");
+    		
+    		List<E> results = new ArrayList<>(amount);
+    		if (values.length == 0) return results;
+    		
+    		for (int i = 0; i < amount; i++) {
+    			results.add((E) draw(random));
+    		}
+    		
+    		return results;
+    	}
+    	
+    	@SuppressWarnings("unchecked")
+    	private <E> List<E> drawUnique(int amount, Random random) {
+    		Validate.isTrue(amount >= 0, "Amount of objects must not be negative");
+    		
+    		// Efraimidis-Spirakis A-Res: keep the entries with the largest keys of ln(u) / weight
+    		int size = Math.min(amount, values.length);
+    		int[] heap = new int[size];
+    		double[] keys = new double[size];
+    		for (int i = 0; i < values.length; i++) {
+    			double key = Math.log(random.nextDouble()) / weights[i];
+    			
+    			if (i < size) {
+    				siftUp(heap, keys, i, i, key);
+    			}
+    			else if (size > 0 && key > keys[0]) {
+    				siftDown(heap, keys, size, i, key);
+    			}
+    		}
+    		
+    		// Remove the smallest keys first, filling the result from the back
+    		Object[] drawn = new Object[size];
+    		for (int remaining = size; remaining > 0; remaining--) {
+    			drawn[remaining - 1] = values[heap[0]];
+    			siftDown(heap, keys, remaining - 1, heap[remaining - 1], keys[remaining - 1]);
+    		}
+    		
+    		List<E> results = new ArrayList<>(size);
+    		for (Object value : drawn) {
+    			results.add((E) value);
+    		}
+    		
+    		return results;
+    	}
+    	
+    }
+    
 }
\ No newline at end of file
@@ -0,0 +1,356 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.utils.math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A {@link MathExpression} flattened into a straight-line sequence of register
+ * instructions. Every instruction writes exactly one register and only reads
+ * registers written before it. Variables are read directly from their slot in the
+ * variable frame passed to {@link #evaluate(double[])}.
+ * <p>
+ * The instructions are generated into a straight-line method (see {@link ExpressionGenerator})
+ * which is evaluated in place of the instructions. Should the method not be generated (e.g.
+ * if too long to be compiled by the JIT compiler), the instructions are interpreted in a
+ * single pass over primitive arrays instead.
+ * <p>
+ * Batches of values (see {@link #evaluateBatch(double[], int, double[], double[])}) are passed
+ * to the generated method one value at a time in a single variable frame. Without a generated
+ * method, batches are interpreted column-wise, in which case every instruction is applied to
+ * all values in a single tight loop over primitive arrays before proceeding to the next
+ * instruction.
+ * <p>
+ * Compiled expressions are not thread-safe as the register file is reused
+ * between evaluations. See {@link #copy()} to share an expression between
+ * multiple users
+ *
+ * @author Parker Hawke - 2008Choco
+ */
+final class CompiledExpression implements MathExpression {
+
+	static final byte OP_VARIABLE = 0;
+	static final byte OP_FUNCTION = 1;
+	static final byte OP_NEGATE = 2;
+	static final byte OP_ADD = 3;
+	static final byte OP_SUBTRACT = 4;
+	static final byte OP_MULTIPLY = 5;
+	static final byte OP_DIVIDE = 6;
+	static final byte OP_POWER = 7;
+
+	private final byte[] opcodes;
+	private final int[] targets, left, right; // Variable instructions hold their slot in "left"
+	private final DoubleUnaryOperator[] functions;
+
+	private final double[] registers;
+	private final int constants, result;
+
+	// The generated evaluator and the minimum length of the frames it reads. null if not generated
+	private final ToDoubleFunction<double[]> generated;
+	private final int frameLength;
+
+	// Lazily allocated register columns for batch evaluation. One column per register
+	private double[][] columns;
+
+	// Lazily allocated variable frame for batch evaluation of the generated evaluator
+	private double[] frame;
+
+	private CompiledExpression(Builder builder) {
+		int instructions = builder.opcodes.size(), constants = builder.constants.size();
+
+		this.opcodes = new byte[instructions];
+		this.targets = new int[instructions];
+		this.left = new int[instructions];
+		this.right = new int[instructions];
+		this.functions = new DoubleUnaryOperator[instructions];
+
+		for (int i = 0; i < instructions; i++) {
+			this.opcodes[i] = builder.opcodes.get(i);
+			this.targets[i] = constants + i;
+			this.left[i] = (opcodes[i] == OP_VARIABLE ? builder.left.get(i) : resolve(builder.left.get(i), constants));
+			this.right[i] = resolve(builder.right.get(i), constants);
+			this.functions[i] = builder.functions.get(i);
+		}
+
+		this.registers = new double[constants + instructions];
+		for (int i = 0; i < constants; i++) {
+			this.registers[i] = builder.constants.get(i);
+		}
+
+		this.constants = constants;
+		this.result = resolve(builder.result, constants);
+
+		int frameLength = 0;
+		for (int i = 0; i < instructions; i++) {
+			if (opcodes[i] == OP_VARIABLE) {
+				frameLength = Math.max(frameLength, left[i] + 1);
+			}
+		}
+
+		this.frameLength = frameLength;
+		this.generated = ExpressionGenerator.generate(opcodes, left, right, functions, registers, constants, result);
+	}
+
+	private CompiledExpression(CompiledExpression expression) {
+		this.opcodes = expression.opcodes;
+		this.targets = expression.targets;
+		this.left = expression.left;
+		this.right = expression.right;
+		this.functions = expression.functions;
+		this.registers = expression.registers.clone();
+		this.constants = expression.constants;
+		this.result = expression.result;
+		this.generated = expression.generated;
+		this.frameLength = expression.frameLength;
+	}
+
+	private static int resolve(int register, int constants) {
+		return (register < 0 ? constants + ~register : register);
+	}
+
+	@Override
+	public double evaluate() {
+		return evaluate(ExpressionNode.NO_VARIABLES);
+	}
+
+	@Override
+	public double evaluate(double[] variables) {
+		if (generated != null) {
+			return generated.applyAsDouble(variables.length >= frameLength ? variables : Arrays.copyOf(variables, frameLength));
+		}
+
+		double[] registers = this.registers;
+
+		for (int i = 0; i < opcodes.length; i++) {
+			double value;
+
+			switch (opcodes[i]) {
+			case OP_VARIABLE:
+				value = (left[i] < variables.length ? variables[left[i]] : 0);
+				break;
+			case OP_FUNCTION:
+				value = functions[i].applyAsDouble(registers[left[i]]);
+				break;
+			case OP_NEGATE:
+				value = -registers[left[i]];
+				break;
+			default:
+				value = apply(opcodes[i], registers[left[i]], registers[right[i]]);
+			}
+
+			registers[targets[i]] = value;
+		}
+
+		return registers[result];
+	}
+
+	@Override
+	public void evaluateBatch(double[] variables, int slot, double[] values, double[] results) {
+		if (generated != null) {
+			double[] frame = this.getFrame(variables, slot);
+			for (int i = 0; i < values.length; i++) {
+				frame[slot] = values[i];
+				results[i] = generated.applyAsDouble(frame);
+			}
+			return;
+		}
+
+		int length = values.length;
+		double[][] columns = this.getColumns(length);
+
+		for (int i = 0; i < opcodes.length; i++) {
+			double[] target = columns[targets[i]];
+
+			if (opcodes[i] == OP_VARIABLE) {
+				if (left[i] == slot) {
+					System.arraycopy(values, 0, target, 0, length);
+				} else {
+					Arrays.fill(target, 0, length, (left[i] < variables.length ? variables[left[i]] : 0));
+				}
+				continue;
+			}
+
+			// Unused operands of unary instructions still resolve to a valid register
+			double[] a = columns[left[i]], b = columns[right[i]];
+
+			switch (opcodes[i]) {
+			case OP_FUNCTION:
+				DoubleUnaryOperator function = functions[i];
+				for (int j = 0; j < length; j++) target[j] = function.applyAsDouble(a[j]);
+				break;
+			case OP_NEGATE:
+				for (int j = 0; j < length; j++) target[j] = -a[j];
+				break;
+			case OP_ADD:
+				for (int j = 0; j < length; j++) target[j] = a[j] + b[j];
+				break;
+			case OP_SUBTRACT:
+				for (int j = 0; j < length; j++) target[j] = a[j] - b[j];
+				break;
+			case OP_MULTIPLY:
+				for (int j = 0; j < length; j++) target[j] = a[j] * b[j];
+				break;
+			case OP_DIVIDE:
+				for (int j = 0; j < length; j++) target[j] = a[j] / b[j];
+				break;
+			default:
+				for (int j = 0; j < length; j++) target[j] = apply(opcodes[i], a[j], b[j]);
+			}
+		}
+
+		System.arraycopy(columns[result], 0, results, 0, length);
+	}
+
+	private double[] getFrame(double[] variables, int slot) {
+		int length = Math.max(Math.max(variables.length, slot + 1), frameLength);
+		if (frame == null || frame.length != length) {
+			this.frame = new double[length];
+		}
+
+		System.arraycopy(variables, 0, frame, 0, variables.length);
+		return frame;
+	}
+
+	private double[][] getColumns(int length) {
+		if (columns != null && columns[0].length >= length) {
+			return columns;
+		}
+
+		this.columns = new double[registers.length][length];
+		for (int i = 0; i < constants; i++) {
+			Arrays.fill(columns[i], registers[i]);
+		}
+
+		return columns;
+	}
+
+	/**
+	 * Create a copy of this expression. The (immutable) instructions are shared with
+	 * this expression while the copy receives its own register file, allowing both
+	 * expressions to be evaluated independently of one another
+	 *
+	 * @return the copied expression
+	 */
+	CompiledExpression copy() {
+		return new CompiledExpression(this);
+	}
+
+	/**
+	 * Apply a binary arithmetic operation to two operands
+	 *
+	 * @param opcode the operation to apply
+	 * @param a the left-hand operand
+	 * @param b the right-hand operand
+	 *
+	 * @return the result of the operation
+	 */
+	static double apply(byte opcode, double a, double b) {
+		switch (opcode) {
+		case OP_ADD: return a + b;
+		case OP_SUBTRACT: return a - b;
+		case OP_MULTIPLY: return a * b;
+		case OP_DIVIDE: return a / b;
+		case OP_POWER: return Math.pow(a, b);
+		default: throw new IllegalArgumentException("Unknown binary opcode: " + opcode);
+		}
+	}
+
+	/**
+	 * Compile an expression tree into its flattened register form
+	 *
+	 * @param root the root node of the expression tree
+	 *
+	 * @return the compiled expression
+	 */
+	static CompiledExpression compile(ExpressionNode root) {
+		Builder builder = new Builder();
+		builder.result = builder.compile(root);
+		return new CompiledExpression(builder);
+	}
+
+	/**
+	 * A builder used by {@link ExpressionNode#compile(Builder)} to emit instructions.
+	 * Constants are assigned the lowest registers and are loaded once upon
+	 * construction of the compiled expression, instructions are assigned the registers
+	 * thereafter in the order in which they were emitted. Nodes shared between multiple
+	 * parents are emitted only once
+	 */
+	static final class Builder {
+
+		// Instruction registers are only known once all constants are emitted. Until then, they are encoded as ~index
+		private final List<Double> constants = new ArrayList<>();
+		private final List<Byte> opcodes = new ArrayList<>();
+		private final List<Integer> left = new ArrayList<>(), right = new ArrayList<>();
+		private final List<DoubleUnaryOperator> functions = new ArrayList<>();
+
+		private final Map<ExpressionNode, Integer> compiled = new IdentityHashMap<>();
+
+		private int result;
+
+		private Builder() {}
+
+		int compile(ExpressionNode node) {
+			Integer register = compiled.get(node);
+			if (register == null) {
+				register = node.compile(this);
+				this.compiled.put(node, register);
+			}
+
+			return register;
+		}
+
+		int constant(double value) {
+			this.constants.add(value);
+			return constants.size() - 1;
+		}
+
+		int variable(int slot) {
+			return emit(OP_VARIABLE, slot, -1, null);
+		}
+
+		int function(DoubleUnaryOperator operator, int operand) {
+			return emit(OP_FUNCTION, operand, -1, operator);
+		}
+
+		int negate(int operand) {
+			return emit(OP_NEGATE, operand, -1, null);
+		}
+
+		int binary(byte opcode, int a, int b) {
+			return emit(opcode, a, b, null);
+		}
+
+		private int emit(byte opcode, int a, int b, DoubleUnaryOperator function) {
+			this.opcodes.add(opcode);
+			this.left.add(a);
+			this.right.add(b);
+			this.functions.add(function);
+			return ~(opcodes.size() - 1);
+		}
+
+	}
+
+}
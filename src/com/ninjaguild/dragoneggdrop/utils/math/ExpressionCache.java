@@ -0,0 +1,82 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.utils.math;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A cache of parsed and compiled {@link MathExpression} objects keyed by their
+ * normalized expression text. An expression is parsed only once, after which every
+ * request for the same expression receives a copy sharing the compiled instructions
+ * (see {@link CompiledExpression#copy()}) at no parsing cost.
+ * <p>
+ * Expressions returned by this cache are independent of one another and may be
+ * evaluated concurrently by separate users
+ *
+ * @author Parker Hawke - 2008Choco
+ */
+public class ExpressionCache {
+
+	private final Map<String, CompiledExpression> expressions = new ConcurrentHashMap<>();
+
+	/**
+	 * Get a compiled expression with variables resolved to fixed slots, parsing it
+	 * only if it has not yet been cached. See {@link MathUtils#parseExpression(String, boolean, String...)}
+	 *
+	 * @param expression the string to parse
+	 * @param fastMath whether to approximate trigonometric functions with lookup tables
+	 * or not
+	 * @param variables the names of all variables in slot order
+	 *
+	 * @return The mathematical expression
+	 */
+	public MathExpression getExpression(String expression, boolean fastMath, String... variables) {
+		Validate.notNull(expression, "Cannot get a null expression");
+
+		String key = normalize(expression) + '|' + fastMath + '|' + String.join(",", variables);
+		return expressions.computeIfAbsent(key, k -> MathUtils.compileExpression(expression, fastMath, variables)).copy();
+	}
+
+	/**
+	 * Get the amount of expressions currently cached
+	 *
+	 * @return the amount of cached expressions
+	 */
+	public int size() {
+		return expressions.size();
+	}
+
+	/**
+	 * Clear all cached expressions. Expressions previously returned by this cache
+	 * remain unaffected
+	 */
+	public void clear() {
+		this.expressions.clear();
+	}
+
+	// Only spaces are skipped by the parser. Other whitespace is significant and left untouched
+	private static String normalize(String expression) {
+		return expression.replaceAll("^ +| +$", "").replaceAll(" {2,}", " ");
+	}
+
+}
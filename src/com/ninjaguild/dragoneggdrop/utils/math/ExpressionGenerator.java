@@ -0,0 +1,370 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.utils.math;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Generates a class evaluating the instructions of a {@link CompiledExpression} as a
+ * single straight-line method over local {@code double} variables. The method has no
+ * loops, branches or instruction dispatch, and every function is called from its own
+ * call site such that the JIT compiler may inline it. Each generated class is defined
+ * by its own class loader, allowing it to be unloaded along with its expression.
+ * <p>
+ * Generated evaluators hold no state of their own and are therefore thread-safe. They
+ * read variables without bounds checks against missing slots, so the variable frame
+ * must hold at least as many values as the expression has variable slots
+ *
+ * @author Parker Hawke - 2008Choco
+ */
+final class ExpressionGenerator {
+
+	// Methods beyond this size are never compiled by HotSpot (see -XX:-DontCompileHugeMethods)
+	private static final int MAX_CODE_LENGTH = 8000;
+
+	private static final String CLASS_NAME = "com/ninjaguild/dragoneggdrop/utils/math/GeneratedExpression";
+	private static final String FUNCTIONS_DESCRIPTOR = "[Ljava/util/function/DoubleUnaryOperator;";
+
+	// Local variables of the generated method: this, the argument, the variable frame, the function array
+	private static final int LOCAL_VARIABLES = 2, LOCAL_FUNCTIONS = 3, LOCAL_REGISTERS = 4;
+
+	private final Map<String, Integer> constantPool = new HashMap<>();
+	private final ByteArrayOutputStream constantPoolBytes = new ByteArrayOutputStream();
+	private final DataOutputStream constantPoolOut = new DataOutputStream(constantPoolBytes);
+	private int constantPoolSize = 1;
+
+	private final ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+	private final DataOutputStream code = new DataOutputStream(codeBytes);
+
+	private ExpressionGenerator() {}
+
+	/**
+	 * Generate an evaluator for the given instructions. The arguments are those of the
+	 * {@link CompiledExpression} being generated, in which registers below the amount of
+	 * constants hold constants and every other register is written by the instruction at
+	 * its index less the amount of constants
+	 *
+	 * @param opcodes the opcode of each instruction
+	 * @param left the left-hand register of each instruction, or the slot of variables
+	 * @param right the right-hand register of each instruction
+	 * @param functions the function of each instruction. null for all but function instructions
+	 * @param registers the register file, of which the constants are read
+	 * @param constants the amount of constants
+	 * @param result the register holding the result
+	 *
+	 * @return the generated evaluator. null if the instructions are too long to be compiled
+	 * by the JIT compiler or the class could not be generated
+	 */
+	@SuppressWarnings("unchecked")
+	static ToDoubleFunction<double[]> generate(byte[] opcodes, int[] left, int[] right, DoubleUnaryOperator[] functions, double[] registers, int constants, int result) {
+		if (LOCAL_REGISTERS + (opcodes.length * 2L) > 0xFFFF) return null;
+
+		try {
+			ExpressionGenerator generator = new ExpressionGenerator();
+			DoubleUnaryOperator[] calls = new DoubleUnaryOperator[opcodes.length];
+			int callCount = generator.writeEvaluation(opcodes, left, right, functions, registers, constants, result, calls);
+			if (generator.codeBytes.size() > MAX_CODE_LENGTH) return null;
+
+			byte[] bytes = generator.writeClass(LOCAL_REGISTERS + (opcodes.length * 2));
+			Class<?> generated = new Loader().define(bytes);
+			Object evaluator = generated.getConstructor(DoubleUnaryOperator[].class).newInstance((Object) Arrays.copyOf(calls, callCount));
+			return (ToDoubleFunction<double[]>) evaluator;
+		} catch (IOException | ReflectiveOperationException | LinkageError e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private int writeEvaluation(byte[] opcodes, int[] left, int[] right, DoubleUnaryOperator[] functions, double[] registers, int constants, int result, DoubleUnaryOperator[] calls) throws IOException {
+		int callCount = 0;
+
+		// double[] variables = (double[]) argument
+		this.code.writeByte(0x2B); // aload_1
+		this.code.writeByte(0xC0); // checkcast
+		this.code.writeShort(classReference("[D"));
+		this.code.writeByte(0x4D); // astore_2
+
+		for (byte opcode : opcodes) {
+			if (opcode == CompiledExpression.OP_FUNCTION) {
+				// DoubleUnaryOperator[] functions = this.functions
+				this.code.writeByte(0x2A); // aload_0
+				this.code.writeByte(0xB4); // getfield
+				this.code.writeShort(fieldReference(CLASS_NAME, "functions", FUNCTIONS_DESCRIPTOR));
+				this.code.writeByte(0x4E); // astore_3
+				break;
+			}
+		}
+
+		for (int i = 0; i < opcodes.length; i++) {
+			switch (opcodes[i]) {
+			case CompiledExpression.OP_VARIABLE:
+				this.code.writeByte(0x2C); // aload_2
+				this.pushInt(left[i]);
+				this.code.writeByte(0x31); // daload
+				break;
+			case CompiledExpression.OP_FUNCTION:
+				calls[callCount] = functions[i];
+				this.code.writeByte(0x2D); // aload_3
+				this.pushInt(callCount++);
+				this.code.writeByte(0x32); // aaload
+				this.load(left[i], registers, constants);
+				this.code.writeByte(0xB9); // invokeinterface
+				this.code.writeShort(interfaceMethodReference("java/util/function/DoubleUnaryOperator", "applyAsDouble", "(D)D"));
+				this.code.writeByte(3); // argument slots, including the receiver
+				this.code.writeByte(0);
+				break;
+			case CompiledExpression.OP_NEGATE:
+				this.load(left[i], registers, constants);
+				this.code.writeByte(0x77); // dneg
+				break;
+			case CompiledExpression.OP_POWER:
+				this.load(left[i], registers, constants);
+				this.load(right[i], registers, constants);
+				this.code.writeByte(0xB8); // invokestatic
+				this.code.writeShort(methodReference("java/lang/Math", "pow", "(DD)D"));
+				break;
+			default:
+				this.load(left[i], registers, constants);
+				this.load(right[i], registers, constants);
+				this.code.writeByte(arithmeticInstruction(opcodes[i]));
+			}
+
+			this.localInstruction(0x39, LOCAL_REGISTERS + (i * 2)); // dstore
+		}
+
+		this.load(result, registers, constants);
+		this.code.writeByte(0xAF); // dreturn
+		return callCount;
+	}
+
+	private byte[] writeClass(int maxLocals) throws IOException {
+		int thisClass = classReference(CLASS_NAME);
+		int superClass = classReference("java/lang/Object");
+		int interfaceClass = classReference("java/util/function/ToDoubleFunction");
+		int functionsName = utf8("functions"), functionsDescriptor = utf8(FUNCTIONS_DESCRIPTOR);
+		int codeName = utf8("Code");
+
+		int constructorName = utf8("<init>"), constructorDescriptor = utf8("(" + FUNCTIONS_DESCRIPTOR + ")V");
+		int superConstructor = methodReference("java/lang/Object", "<init>", "()V");
+		int functionsField = fieldReference(CLASS_NAME, "functions", FUNCTIONS_DESCRIPTOR);
+		int methodName = utf8("applyAsDouble"), methodDescriptor = utf8("(Ljava/lang/Object;)D");
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0); // Java 8
+		out.writeShort(52);
+		out.writeShort(constantPoolSize);
+		this.constantPoolOut.flush();
+		this.constantPoolBytes.writeTo(out);
+
+		out.writeShort(0x0031); // public final super
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		out.writeShort(1);
+		out.writeShort(interfaceClass);
+
+		// private final DoubleUnaryOperator[] functions
+		out.writeShort(1);
+		out.writeShort(0x0012);
+		out.writeShort(functionsName);
+		out.writeShort(functionsDescriptor);
+		out.writeShort(0);
+
+		out.writeShort(2);
+
+		// public GeneratedExpression(DoubleUnaryOperator[] functions)
+		byte[] constructor = {
+			0x2A, (byte) 0xB7, (byte) (superConstructor >> 8), (byte) superConstructor, // aload_0, invokespecial Object.<init>
+			0x2A, 0x2B, (byte) 0xB5, (byte) (functionsField >> 8), (byte) functionsField, // aload_0, aload_1, putfield functions
+			(byte) 0xB1 // return
+		};
+		writeMethod(out, constructorName, constructorDescriptor, codeName, 2, 2, constructor);
+
+		// public double applyAsDouble(Object variables)
+		this.code.flush();
+		writeMethod(out, methodName, methodDescriptor, codeName, 4, maxLocals, codeBytes.toByteArray());
+
+		out.writeShort(0); // No class attributes
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeName, int maxStack, int maxLocals, byte[] code) throws IOException {
+		out.writeShort(0x0001); // public
+		out.writeShort(name);
+		out.writeShort(descriptor);
+		out.writeShort(1);
+
+		out.writeShort(codeName);
+		out.writeInt(12 + code.length);
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(code.length);
+		out.write(code);
+		out.writeShort(0); // No exception handlers
+		out.writeShort(0); // No code attributes
+	}
+
+	// Push the value of a register, being either a constant or a local variable
+	private void load(int register, double[] registers, int constants) throws IOException {
+		if (register < constants) {
+			this.code.writeByte(0x14); // ldc2_w
+			this.code.writeShort(doubleConstant(registers[register]));
+		} else {
+			this.localInstruction(0x18, LOCAL_REGISTERS + ((register - constants) * 2)); // dload
+		}
+	}
+
+	private void localInstruction(int instruction, int local) throws IOException {
+		if (local <= 0xFF) {
+			this.code.writeByte(instruction);
+			this.code.writeByte(local);
+		} else {
+			this.code.writeByte(0xC4); // wide
+			this.code.writeByte(instruction);
+			this.code.writeShort(local);
+		}
+	}
+
+	private void pushInt(int value) throws IOException {
+		if (value <= 5) {
+			this.code.writeByte(0x03 + value); // iconst_<n>
+		} else if (value <= Byte.MAX_VALUE) {
+			this.code.writeByte(0x10); // bipush
+			this.code.writeByte(value);
+		} else if (value <= Short.MAX_VALUE) {
+			this.code.writeByte(0x11); // sipush
+			this.code.writeShort(value);
+		} else {
+			this.code.writeByte(0x13); // ldc_w
+			this.code.writeShort(intConstant(value));
+		}
+	}
+
+	private static int arithmeticInstruction(byte opcode) {
+		switch (opcode) {
+		case CompiledExpression.OP_ADD: return 0x63; // dadd
+		case CompiledExpression.OP_SUBTRACT: return 0x67; // dsub
+		case CompiledExpression.OP_MULTIPLY: return 0x6B; // dmul
+		case CompiledExpression.OP_DIVIDE: return 0x6F; // ddiv
+		default: throw new IllegalArgumentException("Unknown binary opcode: " + opcode);
+		}
+	}
+
+	private int utf8(String value) throws IOException {
+		Integer index = constantPool.get("U" + value);
+		if (index != null) return index;
+
+		this.constantPoolOut.writeByte(1);
+		this.constantPoolOut.writeUTF(value);
+		return add("U" + value, 1);
+	}
+
+	private int intConstant(int value) throws IOException {
+		Integer index = constantPool.get("I" + value);
+		if (index != null) return index;
+
+		this.constantPoolOut.writeByte(3);
+		this.constantPoolOut.writeInt(value);
+		return add("I" + value, 1);
+	}
+
+	private int doubleConstant(double value) throws IOException {
+		long bits = Double.doubleToRawLongBits(value);
+		Integer index = constantPool.get("D" + bits);
+		if (index != null) return index;
+
+		this.constantPoolOut.writeByte(6);
+		this.constantPoolOut.writeLong(bits);
+		return add("D" + bits, 2); // Doubles occupy two entries
+	}
+
+	private int classReference(String name) throws IOException {
+		Integer index = constantPool.get("C" + name);
+		if (index != null) return index;
+
+		int nameIndex = utf8(name);
+		this.constantPoolOut.writeByte(7);
+		this.constantPoolOut.writeShort(nameIndex);
+		return add("C" + name, 1);
+	}
+
+	private int fieldReference(String owner, String name, String descriptor) throws IOException {
+		return memberReference(9, owner, name, descriptor);
+	}
+
+	private int methodReference(String owner, String name, String descriptor) throws IOException {
+		return memberReference(10, owner, name, descriptor);
+	}
+
+	private int interfaceMethodReference(String owner, String name, String descriptor) throws IOException {
+		return memberReference(11, owner, name, descriptor);
+	}
+
+	private int memberReference(int tag, String owner, String name, String descriptor) throws IOException {
+		String key = tag + owner + '.' + name + descriptor;
+		Integer index = constantPool.get(key);
+		if (index != null) return index;
+
+		int ownerIndex = classReference(owner);
+		int nameIndex = utf8(name), descriptorIndex = utf8(descriptor);
+		this.constantPoolOut.writeByte(12); // NameAndType
+		this.constantPoolOut.writeShort(nameIndex);
+		this.constantPoolOut.writeShort(descriptorIndex);
+		int nameAndType = add(key + "#", 1);
+
+		this.constantPoolOut.writeByte(tag);
+		this.constantPoolOut.writeShort(ownerIndex);
+		this.constantPoolOut.writeShort(nameAndType);
+		return add(key, 1);
+	}
+
+	private int add(String key, int entries) {
+		int index = constantPoolSize;
+		this.constantPoolSize += entries;
+		this.constantPool.put(key, index);
+		return index;
+	}
+
+	/*
+	 * Defines a single generated class. A class loader per class allows the class to be
+	 * unloaded as soon as its expression is no longer referenced
+	 */
+	private static final class Loader extends ClassLoader {
+
+		private Loader() {
+			super(ExpressionGenerator.class.getClassLoader());
+		}
+
+		private Class<?> define(byte[] bytes) {
+			return defineClass(null, bytes, 0, bytes.length);
+		}
+
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,278 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.utils.math;
+
+import java.util.Objects;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Represents a single node in a parsed mathematical expression tree. Nodes may
+ * either be evaluated directly (walking the tree recursively) or flattened into
+ * a {@link CompiledExpression}.
+ * <p>
+ * Nodes are immutable and compare structurally, allowing for identical subtrees
+ * to be shared between multiple parents
+ *
+ * @author Parker Hawke - 2008Choco
+ */
+abstract class ExpressionNode implements MathExpression {
+
+	static final double[] NO_VARIABLES = new double[0];
+
+	@Override
+	public double evaluate() {
+		return evaluate(NO_VARIABLES);
+	}
+
+	@Override
+	public abstract double evaluate(double[] variables);
+
+	/**
+	 * Emit the instructions required to evaluate this node into the given builder
+	 *
+	 * @param builder the builder to emit instructions into
+	 * @return the register holding the result of this node
+	 */
+	abstract int compile(CompiledExpression.Builder builder);
+
+	/**
+	 * Check whether this node will always evaluate to the same value regardless
+	 * of variables. Such nodes may be folded into a single {@link Constant}
+	 *
+	 * @return true if constant, false otherwise
+	 */
+	abstract boolean isConstant();
+
+	/**
+	 * A constant numeric value
+	 */
+	static final class Constant extends ExpressionNode {
+
+		private final double value;
+
+		Constant(double value) {
+			this.value = value;
+		}
+
+		@Override
+		public double evaluate(double[] variables) {
+			return value;
+		}
+
+		@Override
+		int compile(CompiledExpression.Builder builder) {
+			return builder.constant(value);
+		}
+
+		@Override
+		boolean isConstant() {
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			return Double.hashCode(value);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Constant && Double.compare(value, ((Constant) obj).value) == 0;
+		}
+	}
+
+	/**
+	 * A variable, read from its slot in the variable frame upon evaluation.
+	 * Slots not present in the frame evaluate to 0
+	 */
+	static final class Variable extends ExpressionNode {
+
+		private final int slot;
+
+		Variable(int slot) {
+			this.slot = slot;
+		}
+
+		@Override
+		public double evaluate(double[] variables) {
+			return (slot < variables.length ? variables[slot] : 0);
+		}
+
+		@Override
+		int compile(CompiledExpression.Builder builder) {
+			return builder.variable(slot);
+		}
+
+		@Override
+		boolean isConstant() {
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return slot;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Variable && slot == ((Variable) obj).slot;
+		}
+	}
+
+	/**
+	 * The negation of a single operand
+	 */
+	static final class Negate extends ExpressionNode {
+
+		private final ExpressionNode operand;
+
+		Negate(ExpressionNode operand) {
+			this.operand = operand;
+		}
+
+		@Override
+		public double evaluate(double[] variables) {
+			return -operand.evaluate(variables);
+		}
+
+		@Override
+		int compile(CompiledExpression.Builder builder) {
+			return builder.negate(builder.compile(operand));
+		}
+
+		@Override
+		boolean isConstant() {
+			return operand instanceof Constant;
+		}
+
+		@Override
+		public int hashCode() {
+			return ~operand.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Negate && operand.equals(((Negate) obj).operand);
+		}
+	}
+
+	/**
+	 * A function (operator) applied to a single operand. Only pure operators are folded
+	 * and shared with structurally identical nodes. Impure operators are evaluated every
+	 * time. See {@link MathUtils#injectMathematicalOperator(String, DoubleUnaryOperator, boolean)}
+	 */
+	static final class Function extends ExpressionNode {
+
+		private final DoubleUnaryOperator operator;
+		private final ExpressionNode operand;
+		private final boolean pure;
+
+		Function(DoubleUnaryOperator operator, ExpressionNode operand, boolean pure) {
+			this.operator = operator;
+			this.operand = operand;
+			this.pure = pure;
+		}
+
+		Function(DoubleUnaryOperator operator, ExpressionNode operand) {
+			this(operator, operand, true);
+		}
+
+		@Override
+		public double evaluate(double[] variables) {
+			return operator.applyAsDouble(operand.evaluate(variables));
+		}
+
+		@Override
+		int compile(CompiledExpression.Builder builder) {
+			return builder.function(operator, builder.compile(operand));
+		}
+
+		@Override
+		boolean isConstant() {
+			return pure && operand instanceof Constant;
+		}
+
+		@Override
+		public int hashCode() {
+			return (pure ? 31 * System.identityHashCode(operator) + operand.hashCode() : System.identityHashCode(this));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!pure || !(obj instanceof Function)) return this == obj;
+
+			Function other = (Function) obj;
+			return other.pure && operator == other.operator && operand.equals(other.operand);
+		}
+	}
+
+	/**
+	 * A binary arithmetic operation (addition, subtraction, multiplication,
+	 * division or exponentiation)
+	 */
+	static final class Binary extends ExpressionNode {
+
+		private final byte opcode;
+		private final ExpressionNode left, right;
+
+		/**
+		 * Construct a new binary node
+		 *
+		 * @param opcode the operation to perform. One of the {@code OP_*} constants
+		 * in {@link CompiledExpression}
+		 * @param left the left-hand operand
+		 * @param right the right-hand operand
+		 */
+		Binary(byte opcode, ExpressionNode left, ExpressionNode right) {
+			this.opcode = opcode;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		public double evaluate(double[] variables) {
+			return CompiledExpression.apply(opcode, left.evaluate(variables), right.evaluate(variables));
+		}
+
+		@Override
+		int compile(CompiledExpression.Builder builder) {
+			int a = builder.compile(left), b = builder.compile(right);
+			return builder.binary(opcode, a, b);
+		}
+
+		@Override
+		boolean isConstant() {
+			return left instanceof Constant && right instanceof Constant;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(opcode, left, right);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Binary)) return false;
+
+			Binary other = (Binary) obj;
+			return opcode == other.opcode && left.equals(other.left) && right.equals(other.right);
+		}
+	}
+
+}
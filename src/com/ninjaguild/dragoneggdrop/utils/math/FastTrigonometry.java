@@ -0,0 +1,135 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.utils.math;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Approximate trigonometric functions (in degrees) backed by a precomputed sine
+ * table with linear interpolation between entries. The table holds
+ * {@value #STEPS_PER_DEGREE} entries per degree, bounding the absolute error of
+ * {@link #sin(double)} and {@link #cos(double)} to at most {@value #MAX_ERROR}.
+ * The error of {@link #tan(double)} is relative to the cosine of the angle and
+ * grows without bound near its asymptotes.
+ * <p>
+ * Every lookup is split into two steps. An angle is first reduced to a position
+ * in the table with {@link #POSITION}, then read with {@link #SIN}, {@link #COS}
+ * or {@link #TAN}. Expressions parsed with fast-math share the reduced position
+ * between all trigonometric functions of the same operand, meaning a sine and
+ * cosine of the same angle are computed as a single range reduction followed by
+ * two table reads
+ *
+ * @author Parker Hawke - 2008Choco
+ */
+public final class FastTrigonometry {
+
+	/**
+	 * The amount of table entries per degree
+	 */
+	public static final int STEPS_PER_DEGREE = 4;
+
+	/**
+	 * The maximum absolute error of {@link #sin(double)} and {@link #cos(double)}
+	 */
+	public static final double MAX_ERROR = 2.5E-6;
+
+	private static final int TABLE_SIZE = 360 * STEPS_PER_DEGREE, QUARTER_TURN = TABLE_SIZE / 4;
+	private static final double[] SIN_TABLE = new double[TABLE_SIZE + 1];
+
+	static final DoubleUnaryOperator POSITION = FastTrigonometry::position;
+	static final DoubleUnaryOperator SIN = FastTrigonometry::sinAt;
+	static final DoubleUnaryOperator COS = FastTrigonometry::cosAt;
+	static final DoubleUnaryOperator TAN = FastTrigonometry::tanAt;
+
+	static {
+		for (int i = 0; i <= TABLE_SIZE; i++) {
+			SIN_TABLE[i] = StrictMath.sin(Math.toRadians((double) i / STEPS_PER_DEGREE));
+		}
+	}
+
+	private FastTrigonometry() {}
+
+	/**
+	 * Get the approximate sine of an angle
+	 *
+	 * @param degrees the angle in degrees
+	 * @return the sine of the angle
+	 */
+	public static double sin(double degrees) {
+		return sinAt(position(degrees));
+	}
+
+	/**
+	 * Get the approximate cosine of an angle
+	 *
+	 * @param degrees the angle in degrees
+	 * @return the cosine of the angle
+	 */
+	public static double cos(double degrees) {
+		return cosAt(position(degrees));
+	}
+
+	/**
+	 * Get the approximate tangent of an angle
+	 *
+	 * @param degrees the angle in degrees
+	 * @return the tangent of the angle
+	 */
+	public static double tan(double degrees) {
+		return tanAt(position(degrees));
+	}
+
+	/**
+	 * Reduce an angle to its position in the sine table
+	 *
+	 * @param degrees the angle in degrees
+	 * @return the position in the table, in the range [0, TABLE_SIZE). NaN if the angle
+	 * is not finite
+	 */
+	static double position(double degrees) {
+		double position = (degrees % 360) * STEPS_PER_DEGREE;
+		if (position < 0) position += TABLE_SIZE;
+
+		// Very small negative angles round up to the size of the table
+		return (position >= TABLE_SIZE ? position - TABLE_SIZE : position);
+	}
+
+	static double sinAt(double position) {
+		return lookup(position);
+	}
+
+	static double cosAt(double position) {
+		position += QUARTER_TURN;
+		return lookup(position >= TABLE_SIZE ? position - TABLE_SIZE : position);
+	}
+
+	static double tanAt(double position) {
+		return sinAt(position) / cosAt(position);
+	}
+
+	private static double lookup(double position) {
+		if (Double.isNaN(position)) return Double.NaN;
+
+		int index = (int) position;
+		double a = SIN_TABLE[index];
+		return a + (SIN_TABLE[index + 1] - a) * (position - index);
+	}
+
+}
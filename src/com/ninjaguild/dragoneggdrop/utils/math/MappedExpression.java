@@ -0,0 +1,73 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.utils.math;
+
+import java.util.Map;
+
+/**
+ * A {@link MathExpression} adapter reading its variables from a map rather than a
+ * slot-indexed frame. The map is read upon every call to {@link #evaluate()} such
+ * that variables may be replaced between evaluations
+ *
+ * @author Parker Hawke - 2008Choco
+ */
+final class MappedExpression implements MathExpression {
+
+	private final MathExpression expression;
+	private final String[] slots;
+	private final Map<String, Double> variables;
+	private final double[] frame;
+
+	/**
+	 * Construct a new MappedExpression
+	 *
+	 * @param expression the slot-based expression to evaluate
+	 * @param slots the variable names in order of their slots
+	 * @param variables the map from which to read variables
+	 */
+	MappedExpression(MathExpression expression, String[] slots, Map<String, Double> variables) {
+		this.expression = expression;
+		this.slots = slots;
+		this.variables = variables;
+		this.frame = new double[slots.length];
+	}
+
+	@Override
+	public double evaluate() {
+		if (variables != null) {
+			for (int i = 0; i < slots.length; i++) {
+				this.frame[i] = variables.getOrDefault(slots[i], 0.0);
+			}
+		}
+
+		return expression.evaluate(frame);
+	}
+
+	@Override
+	public double evaluate(double[] variables) {
+		return expression.evaluate(variables);
+	}
+
+	@Override
+	public void evaluateBatch(double[] variables, int slot, double[] values, double[] results) {
+		this.expression.evaluateBatch(variables, slot, values, results);
+	}
+
+}
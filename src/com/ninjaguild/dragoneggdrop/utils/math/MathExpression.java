@@ -19,8 +19,12 @@
 
 package com.ninjaguild.dragoneggdrop.utils.math;
 
+import java.util.Arrays;
+
 /**
- * Represents a mathematical expression capable of being evaluated
+ * Represents a mathematical expression capable of being evaluated. Expressions
+ * parsed with {@link MathUtils#parseExpression(String, String...)} read their
+ * variables by slot from a primitive array, see {@link #evaluate(double[])}
  * 
  * @author Parker Hawke - 2008Choco
  */
@@ -34,4 +38,38 @@ public interface MathExpression {
 	 */
 	public double evaluate();
 	
+	/**
+	 * Evaluate the mathematical expression with the given variable values. Values are
+	 * read by slot, in the order in which the variable names were declared when the
+	 * expression was parsed. Missing slots evaluate to 0. Expressions without variable
+	 * slots ignore the provided values entirely
+	 * 
+	 * @param variables the values of each variable slot
+	 * @return the evaluation result
+	 */
+	public default double evaluate(double[] variables) {
+		return evaluate();
+	}
+	
+	/**
+	 * Evaluate the mathematical expression once for every value in an array, substituting
+	 * each value into the given variable slot. All other variables are read from the
+	 * provided variable values. This is equivalent to (though may be considerably faster
+	 * than) repeatedly calling {@link #evaluate(double[])}
+	 * 
+	 * @param variables the values of each variable slot
+	 * @param slot the slot into which each value should be substituted
+	 * @param values the values to substitute
+	 * @param results the array in which to store the results. Must be at least as long
+	 * as the values array
+	 */
+	public default void evaluateBatch(double[] variables, int slot, double[] values, double[] results) {
+		double[] frame = Arrays.copyOf(variables, Math.max(variables.length, slot + 1));
+		
+		for (int i = 0; i < values.length; i++) {
+			frame[slot] = values[i];
+			results[i] = evaluate(frame);
+		}
+	}
+	
 }
\ No newline at end of file
@@ -19,8 +19,14 @@
 
 package com.ninjaguild.dragoneggdrop.utils.math;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.DoubleUnaryOperator;
 
 /**
@@ -41,10 +47,18 @@ public class MathUtils {
 	 *   - Allow for custom arithmetic functions
 	 *   - Variables included in the function
 	 *   - Java 8 functionality & Object-Oriented format
+	 *   - Parsing into an expression tree with constant folding and shared subexpressions
 	 */
 	
 	private static final Map<String, DoubleUnaryOperator> OPERATORS = new HashMap<>();
 	
+	// Trigonometric functions are split into a degree conversion and a radian operation such that conversions may be shared
+	private static final DoubleUnaryOperator TO_RADIANS = Math::toRadians;
+	private static final Map<String, DoubleUnaryOperator> RADIAN_OPERATORS = new HashMap<>();
+	private static final Map<String, DoubleUnaryOperator> FAST_OPERATORS = new HashMap<>();
+	private static final Set<String> RECIPROCAL_OPERATORS = new HashSet<>();
+	private static final Set<String> IMPURE_OPERATORS = new HashSet<>();
+	
 	static {
 		// Basic arithmetics
 		OPERATORS.put("sqrt", StrictMath::sqrt);
@@ -60,8 +74,25 @@ public class MathUtils {
 		OPERATORS.put("sec", x -> 1 / StrictMath.cos(Math.toRadians(x)));
 		OPERATORS.put("cot", x -> 1 / StrictMath.tan(Math.toRadians(x)));
 		
+		DoubleUnaryOperator sin = StrictMath::sin, cos = StrictMath::cos, tan = StrictMath::tan;
+		RADIAN_OPERATORS.put("sin", sin);
+		RADIAN_OPERATORS.put("cos", cos);
+		RADIAN_OPERATORS.put("tan", tan);
+		RADIAN_OPERATORS.put("csc", sin);
+		RADIAN_OPERATORS.put("sec", cos);
+		RADIAN_OPERATORS.put("cot", tan);
+		FAST_OPERATORS.put("sin", FastTrigonometry.SIN);
+		FAST_OPERATORS.put("cos", FastTrigonometry.COS);
+		FAST_OPERATORS.put("tan", FastTrigonometry.TAN);
+		FAST_OPERATORS.put("csc", FastTrigonometry.SIN);
+		FAST_OPERATORS.put("sec", FastTrigonometry.COS);
+		FAST_OPERATORS.put("cot", FastTrigonometry.TAN);
+		RECIPROCAL_OPERATORS.add("csc");
+		RECIPROCAL_OPERATORS.add("sec");
+		RECIPROCAL_OPERATORS.add("cot");
+		
 		// Conversion
-		OPERATORS.put("rad", Math::toRadians);
+		OPERATORS.put("rad", TO_RADIANS);
 		OPERATORS.put("deg", Math::toDegrees);
 	}
 	
@@ -73,11 +104,31 @@ public class MathUtils {
 	 * @param expression the string to parse
 	 * @param variables the map containing necessary variables for this expression
 	 * (To modify variables at any given time between evaluations, replace values in the map)
+	 * @param compile whether to compile the expression into a flattened sequence of
+	 * instructions or not. If false, the expression will be evaluated by walking the
+	 * parsed expression tree
 	 * 
 	 * @return The mathematical expression
 	 */
+	public static MathExpression parseExpression(String expression, Map<String, Double> variables, boolean compile) {
+		List<String> slots = new ArrayList<>();
+		MathExpression result = parse(expression, slots, true, compile, false);
+		return new MappedExpression(result, slots.toArray(new String[slots.size()]), variables);
+	}
+	
+	/**
+	 * Evaluate a mathematical expression with given variables. The resulting expression
+	 * will be compiled
+	 * 
+	 * @param expression the string to parse
+	 * @param variables the map containing necessary variables for this expression
+	 * (To modify variables at any given time between evaluations, replace values in the map)
+	 * 
+	 * @return The mathematical expression
+	 * @see #parseExpression(String, Map, boolean)
+	 */
 	public static MathExpression parseExpression(String expression, Map<String, Double> variables) {
-		return new ExpressionEvaluator(expression, variables).parse();
+		return parseExpression(expression, variables, true);
 	}
 	
 	/**
@@ -89,7 +140,39 @@ public class MathUtils {
 	 * @return The mathematical expression
 	 */
 	public static MathExpression parseExpression(String expression) {
-		return new ExpressionEvaluator(expression).parse();
+		return parse(expression, Collections.emptyList(), false, true, false);
+	}
+	
+	/**
+	 * Evaluate a mathematical expression with variables resolved to fixed slots. The
+	 * resulting expression should be evaluated with {@link MathExpression#evaluate(double[])},
+	 * where the value of each variable is held at the index at which its name was declared
+	 * in this method. Names not declared as variables evaluate to 0
+	 * 
+	 * @param expression the string to parse
+	 * @param variables the names of all variables in slot order
+	 * 
+	 * @return The mathematical expression
+	 */
+	public static MathExpression parseExpression(String expression, String... variables) {
+		return parseExpression(expression, false, variables);
+	}
+	
+	/**
+	 * Evaluate a mathematical expression with variables resolved to fixed slots and
+	 * optionally approximated trigonometric functions. See {@link FastTrigonometry} for
+	 * the maximum error of approximated functions
+	 * 
+	 * @param expression the string to parse
+	 * @param fastMath whether to approximate trigonometric functions with lookup tables
+	 * or not
+	 * @param variables the names of all variables in slot order
+	 * 
+	 * @return The mathematical expression
+	 * @see #parseExpression(String, String...)
+	 */
+	public static MathExpression parseExpression(String expression, boolean fastMath, String... variables) {
+		return parse(expression, Arrays.asList(variables), false, true, fastMath);
 	}
 	
 	/**
@@ -97,18 +180,57 @@ public class MathUtils {
 	 * 
 	 * @param functionName the name of the function to inject (i.e. "sqrt")
 	 * @param operator the operation to perform when parsing this function
+	 * @param pure whether the operation always returns the same result for the same
+	 * operand or not. Pure operations of constant operands are evaluated once when
+	 * parsed, whereas impure operations (i.e. random or time-based) are evaluated
+	 * every time the expression is evaluated
 	 * 
 	 * @return true if successful. false if operator already exists
 	 */
-	public static boolean injectMathematicalOperator(String functionName, DoubleUnaryOperator operator) {
+	public static boolean injectMathematicalOperator(String functionName, DoubleUnaryOperator operator, boolean pure) {
 		if (OPERATORS.containsKey(functionName)) return false;
 		
 		OPERATORS.put(functionName, operator);
+		if (!pure) IMPURE_OPERATORS.add(functionName);
 		return true;
 	}
 	
 	/**
-	 * The logic behind the parsing of {@link MathExpression} objects
+	 * Inject a custom mathematical operation into the expression parser. The operation
+	 * is assumed to be impure and is evaluated every time the expression is evaluated
+	 * 
+	 * @param functionName the name of the function to inject (i.e. "sqrt")
+	 * @param operator the operation to perform when parsing this function
+	 * 
+	 * @return true if successful. false if operator already exists
+	 * @see #injectMathematicalOperator(String, DoubleUnaryOperator, boolean)
+	 */
+	public static boolean injectMathematicalOperator(String functionName, DoubleUnaryOperator operator) {
+		return injectMathematicalOperator(functionName, operator, false);
+	}
+	
+	/**
+	 * Parse and compile a mathematical expression with variables resolved to fixed slots
+	 * 
+	 * @param expression the string to parse
+	 * @param fastMath whether to approximate trigonometric functions or not
+	 * @param variables the names of all variables in slot order
+	 * 
+	 * @return the compiled expression
+	 */
+	static CompiledExpression compileExpression(String expression, boolean fastMath, String... variables) {
+		return (CompiledExpression) parse(expression, Arrays.asList(variables), false, true, fastMath);
+	}
+	
+	private static MathExpression parse(String expression, List<String> slots, boolean declareSlots, boolean compile, boolean fastMath) {
+		ExpressionNode root = new ExpressionEvaluator(expression, slots, declareSlots, fastMath).parse();
+		return (compile ? CompiledExpression.compile(root) : root);
+	}
+	
+	/**
+	 * The logic behind the parsing of {@link MathExpression} trees. Subtrees
+	 * consisting solely of constants and pure functions are folded into a single
+	 * constant, and structurally identical subtrees are shared between their parents
 	 * 
 	 * @author Parker Hawke - 2008Choco
 	 */
@@ -117,15 +239,24 @@ public class MathUtils {
 		private int pos = -1, ch;
 		
 		private final String expression;
-		private final Map<String, Double> variables;
+		private final List<String> slots;
+		private final boolean declareSlots, fastMath;
+		private final Map<ExpressionNode, ExpressionNode> nodes = new HashMap<>();
 		
-		public ExpressionEvaluator(String expression, Map<String, Double> variables) {
+		/**
+		 * Construct a new ExpressionEvaluator
+		 * 
+		 * @param expression the expression to parse
+		 * @param slots the variable names in slot order
+		 * @param declareSlots whether unknown variable names should be declared as new
+		 * slots or not. If false, unknown variables are parsed as 0
+		 * @param fastMath whether to approximate trigonometric functions or not
+		 */
+		public ExpressionEvaluator(String expression, List<String> slots, boolean declareSlots, boolean fastMath) {
 			this.expression = expression;
-			this.variables = variables;
-		}
-		
-		public ExpressionEvaluator(String expression) {
-			this(expression, new HashMap<>());
+			this.slots = slots;
+			this.declareSlots = declareSlots;
+			this.fastMath = fastMath;
 		}
         
 		/**
@@ -152,14 +283,14 @@ public class MathUtils {
         }
         
         /**
-         * Parse the provided function into a MathExpression using
+         * Parse the provided function into an expression tree using
          * recursive functions
          * 
-         * @return the parsed mathematical expression
+         * @return the root of the parsed expression tree
          */
-        public MathExpression parse() {
+        public ExpressionNode parse() {
         	this.nextChar();
-            MathExpression x = this.parseExpression();
+            ExpressionNode x = this.parseExpression();
             if (pos < expression.length()) throw new RuntimeException("Unexpected: " + (char)ch);
             return x;
         }
@@ -177,16 +308,14 @@ public class MathUtils {
          * 
          * @return the parsed expression
          */
-        public MathExpression parseExpression() {
-            MathExpression x = this.parseTerm();
+        public ExpressionNode parseExpression() {
+            ExpressionNode x = this.parseTerm();
             while (true) {
                 if (eat('+')) { // addition
-                	MathExpression a = x, b = parseTerm();
-                    x = (() -> a.evaluate() + b.evaluate());
+                    x = node(new ExpressionNode.Binary(CompiledExpression.OP_ADD, x, parseTerm()));
                 }
                 else if (eat('-')) { // subtraction
-                	MathExpression a = x, b = parseTerm();
-                    x = (() -> a.evaluate() - b.evaluate());
+                    x = node(new ExpressionNode.Binary(CompiledExpression.OP_SUBTRACT, x, parseTerm()));
                 }
                 else return x;
             }
@@ -198,16 +327,14 @@ public class MathUtils {
          * 
          * @return the parsed term
          */
-        public MathExpression parseTerm() {
-            MathExpression x = this.parseFactor();
+        public ExpressionNode parseTerm() {
+            ExpressionNode x = this.parseFactor();
             while (true) {
                 if (eat('*')){ // multiplication
-                	MathExpression a = x, b = parseFactor();
-                    x = (() -> a.evaluate() * b.evaluate());
+                    x = node(new ExpressionNode.Binary(CompiledExpression.OP_MULTIPLY, x, parseFactor()));
                 }
                 else if (eat('/')) { // division
-                	MathExpression a = x, b = parseFactor();
-                    x = (() -> a.evaluate() / b.evaluate());
+                    x = node(new ExpressionNode.Binary(CompiledExpression.OP_DIVIDE, x, parseFactor()));
                 }
                 else return x;
             }
@@ -220,14 +347,13 @@ public class MathUtils {
          * 
          * @return the parsed factor
          */
-        public MathExpression parseFactor() {
+        public ExpressionNode parseFactor() {
             if (eat('+')) return parseFactor(); // unary plus
             if (eat('-')){
-            	double value = -parseFactor().evaluate();
-            	return (() -> value); // unary minus
+            	return node(new ExpressionNode.Negate(parseFactor())); // unary minus
             }
 
-            MathExpression x;
+            ExpressionNode x;
             int startPos = this.pos;
             if (eat('(')) { // parentheses
                 x = this.parseExpression();
@@ -236,28 +362,92 @@ public class MathUtils {
                 while ((ch >= '0' && ch <= '9') || ch == '.') this.nextChar();
                 
                 String value = expression.substring(startPos, this.pos);
-                x = (() -> Double.parseDouble(value));
+                x = node(new ExpressionNode.Constant(Double.parseDouble(value)));
             } else if (ch >= 'a' && ch <= 'z') { // functions
                 while (ch >= 'a' && ch <= 'z') this.nextChar();
                 String func = expression.substring(startPos, this.pos);
                 
                 if (OPERATORS.containsKey(func)) {
-                	DoubleUnaryOperator operand = OPERATORS.get(func);
-                	MathExpression a = this.parseFactor();
-                	x = (() -> operand.applyAsDouble(a.evaluate()));
+                	x = this.parseFunction(func, this.parseFactor());
                 } else {
-                	x = (() -> variables != null ? variables.getOrDefault(func, 0.0) : 0);
+                	x = this.parseVariable(func);
                 }
             } else {
                 throw new ArithmeticException("Unexpected: \"" + ch + "\"");
             }
 
             if (eat('^')) { // exponentiation
-            	MathExpression a = x, b = parseFactor();
-                x = (() -> Math.pow(a.evaluate(), b.evaluate()));
+                x = node(new ExpressionNode.Binary(CompiledExpression.OP_POWER, x, parseFactor()));
             }
 
             return x;
         }
+        
+        /**
+         * Parse a variable, resolving its name to a slot
+         * 
+         * @param name the name of the variable
+         * @return the parsed variable
+         */
+        private ExpressionNode parseVariable(String name) {
+            int slot = slots.indexOf(name);
+            if (slot == -1 && declareSlots) {
+                this.slots.add(name);
+                slot = slots.size() - 1;
+            }
+            
+            return node(slot != -1 ? new ExpressionNode.Variable(slot) : new ExpressionNode.Constant(0));
+        }
+        
+        /**
+         * Parse the application of a function to an already parsed operand.
+         * Trigonometric functions convert their operand to radians (or a table
+         * position if approximated) as a separate node such that the conversion
+         * is shared between all functions of the same operand (i.e. "cos(theta)"
+         * and "sin(theta)")
+         * 
+         * @param func the name of the function
+         * @param operand the operand to apply the function to
+         * 
+         * @return the parsed function
+         */
+        private ExpressionNode parseFunction(String func, ExpressionNode operand) {
+            DoubleUnaryOperator radianOperator = RADIAN_OPERATORS.get(func);
+            if (radianOperator == null) {
+                return node(new ExpressionNode.Function(OPERATORS.get(func), operand, !IMPURE_OPERATORS.contains(func)));
+            }
+            
+            ExpressionNode x;
+            if (fastMath) {
+                ExpressionNode position = node(new ExpressionNode.Function(FastTrigonometry.POSITION, operand));
+                x = node(new ExpressionNode.Function(FAST_OPERATORS.get(func), position));
+            } else {
+                ExpressionNode radians = node(new ExpressionNode.Function(TO_RADIANS, operand));
+                x = node(new ExpressionNode.Function(radianOperator, radians));
+            }
+            
+            if (RECIPROCAL_OPERATORS.contains(func)) {
+                x = node(new ExpressionNode.Binary(CompiledExpression.OP_DIVIDE, node(new ExpressionNode.Constant(1)), x));
+            }
+            
+            return x;
+        }
+        
+        /**
+         * Fold the given node into a constant if possible and return the
+         * shared instance of a structurally identical node if one was
+         * already parsed
+         * 
+         * @param node the node to process
+         * @return the resulting node
+         */
+        private ExpressionNode node(ExpressionNode node) {
+            if (node.isConstant() && !(node instanceof ExpressionNode.Constant)) {
+                node = new ExpressionNode.Constant(node.evaluate());
+            }
+            
+            ExpressionNode existing = nodes.putIfAbsent(node, node);
+            return (existing != null ? existing : node);
+        }
 	}
 }
\ No newline at end of file
@@ -23,9 +23,14 @@ import com.ninjaguild.dragoneggdrop.DragonEggDrop;
 import com.ninjaguild.dragoneggdrop.api.BattleState;
 import com.ninjaguild.dragoneggdrop.api.BattleStateChangeEvent;
 import com.ninjaguild.dragoneggdrop.dragon.DragonTemplate;
+import com.ninjaguild.dragoneggdrop.management.AnimationTask;
 import com.ninjaguild.dragoneggdrop.management.DEDManager.RespawnType;
 import com.ninjaguild.dragoneggdrop.management.EndWorldWrapper;
+import com.ninjaguild.dragoneggdrop.management.ServerLoadMonitor;
+import com.ninjaguild.dragoneggdrop.utils.BattleRandom;
+import com.ninjaguild.dragoneggdrop.utils.ParticleEmitter;
 import com.ninjaguild.dragoneggdrop.utils.ParticleShapeDefinition;
+import com.ninjaguild.dragoneggdrop.utils.ParticleTrajectory;
 import com.ninjaguild.dragoneggdrop.versions.DragonBattle;
 
 import org.bukkit.Bukkit;
@@ -35,17 +40,19 @@ import org.bukkit.Particle;
 import org.bukkit.World;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.EnderDragon;
-import org.bukkit.scheduler.BukkitRunnable;
 
 /**
- * Represents a BukkitRunnable that handles the generation and particle display
+ * Represents an AnimationTask that handles the generation and particle display
  * of the loot after the Ender Dragon's death
  */
-public class DragonDeathRunnable extends BukkitRunnable {
+public class DragonDeathRunnable extends AnimationTask {
 	
 	private final DragonEggDrop plugin;
 	
 	private ParticleShapeDefinition particleShape;
+	private ParticleTrajectory trajectory;
+	private ParticleFrameRunnable frameRunnable;
+	private ParticleEmitter emitter;
 	
 	private final World world;
 	private final EndWorldWrapper worldWrapper;
@@ -55,9 +62,11 @@ public class DragonDeathRunnable extends BukkitRunnable {
 	private double particleExtra = 0D;
 	private double particleMultiplier = 1D;
 	private int particleStreamInterval = 360;
+	private double[] streamThetas, streamXOffsets, streamZOffsets;
 	private double xOffset, yOffset, zOffset;
 	private long particleInterval = 0L;
 	private int lightningAmount;
+	private boolean virtualEffects;
 
 	private EnderDragon dragon;
 	private boolean respawnDragon = false;
@@ -66,6 +75,7 @@ public class DragonDeathRunnable extends BukkitRunnable {
 	private double animationTime = 0;
 	private double theta = 0;
 	private double currentY;
+	private int landingFrame;
 
 	/**
 	 * Construct a new DragonDeathRunnable object
@@ -86,34 +96,42 @@ public class DragonDeathRunnable extends BukkitRunnable {
 		this.particleExtra = config.getDouble("Particles.extra", 0.0D);
 		this.particleMultiplier = config.getDouble("Particles.speed-multiplier", 0.0D);
 		this.particleStreamInterval = 360 / Math.max(1, config.getInt("Particles.stream-count"));
+		this.streamThetas = new double[(359 / particleStreamInterval) + 1];
+		this.streamXOffsets = new double[streamThetas.length];
+		this.streamZOffsets = new double[streamThetas.length];
 		this.xOffset = config.getDouble("Particles.xOffset");
 		this.yOffset = config.getDouble("Particles.yOffset");
 		this.zOffset = config.getDouble("Particles.zOffset");
 		this.particleInterval = config.getLong("Particles.interval", 1L);
 		this.lightningAmount = config.getInt("lightning-amount");
+		this.virtualEffects = config.getBoolean("virtual-effects", false);
 		
 		// Portal location
 		DragonBattle dragonBattle = plugin.getNMSAbstract().getEnderDragonBattleFromDragon(dragon);
 		Location portalLocation = dragonBattle.getEndPortalLocation();
 		this.currentY = config.getDouble("Particles.egg-start-y");
 		this.location = new Location(world, portalLocation.getX(), this.currentY, portalLocation.getZ());
+		this.landingFrame = predictLandingFrame(world, location, particleMultiplier);
+		
+		this.emitter = new ParticleEmitter(plugin.getNMSAbstract());
+		this.emitter.setLevelOfDetail(config.getDouble("Particles.level-of-detail.full-radius", 24.0),
+				config.getDouble("Particles.level-of-detail.view-radius", 32.0), Math.max(1, config.getInt("Particles.level-of-detail.thinning", 2)));
+		plugin.getParticleBudget().register(emitter);
 		
 		// Expression parsing
-		String shape = config.getString("Particles.Advanced.preset-shape");
-		String xCoordExpressionString = config.getString("Particles.Advanced.x-coord-expression");
-		String zCoordExpressionString = config.getString("Particles.Advanced.z-coord-expression");
+		this.particleShape = ParticleShapeDefinition.fromConfig(config, location, plugin.getExpressionCache());
 		
-		if (shape.equalsIgnoreCase("BALL")) {
-			this.particleShape = new ParticleShapeDefinition(location, "x", "z");
-		}
-		else if (shape.equalsIgnoreCase("HELIX")) {
-			this.particleShape = new ParticleShapeDefinition(location, "cos(theta) * 1.2", "sin(theta) * 1.2");
-		}
-		else if (shape.equalsIgnoreCase("OPEN_END_HELIX")) {
-			this.particleShape = new ParticleShapeDefinition(location, "cos(theta) * (100 / t)", "sin(theta) * (100 / t)");
+		// Replay the baked trajectory if one applies to this portal
+		ParticleTrajectory trajectory = plugin.getParticleTrajectory();
+		if (trajectory != null && trajectory.isApplicable(location.getX(), location.getZ())) {
+			this.trajectory = trajectory;
 		}
-		else { // CUSTOM or default
-			this.particleShape = new ParticleShapeDefinition(location, xCoordExpressionString, zCoordExpressionString);
+		
+		// Otherwise compute frames ahead of time off the main thread
+		int frameBuffer = config.getInt("Particles.Advanced.async-frame-buffer", 20);
+		if (this.trajectory == null && frameBuffer > 0) {
+			ParticleShapeDefinition workerShape = ParticleShapeDefinition.fromConfig(config, location.clone(), plugin.getExpressionCache());
+			this.frameRunnable = new ParticleFrameRunnable(plugin, workerShape, location.getX(), location.getZ(), particleStreamInterval, frameBuffer, landingFrame);
 		}
 
 		this.respawnDragon = config.getBoolean("respawn-on-death", false);
@@ -129,30 +147,60 @@ public class DragonDeathRunnable extends BukkitRunnable {
 		this.theta += 5;
 		
 		location.subtract(0, 1 / particleMultiplier, 0);
-		if (this.particleStreamInterval < 360) {
-			for (int i = 0; i < 360; i += this.particleStreamInterval){
-				this.theta += particleStreamInterval;
-				this.particleShape.updateVariables(location.getX(), location.getZ(), animationTime, theta);
-				this.particleShape.executeExpression(particleType, particleAmount, xOffset, yOffset, zOffset, particleExtra);
+		this.theta = ParticleTrajectory.advanceTheta(theta, particleStreamInterval, streamThetas);
+		
+		// Reduce particle density and skip every other frame while the server is struggling
+		int degradationLevel = plugin.getLoadMonitor().getDegradationLevel();
+		this.emitter.setReduction(degradationLevel + 1);
+		
+		int frame = (int) animationTime - 1;
+		if (degradationLevel >= ServerLoadMonitor.LEVEL_MINIMAL && frame % 2 == 1) {
+			if (frameRunnable != null) {
+				this.frameRunnable.poll(frame, streamXOffsets, streamZOffsets);
+			}
+		} else if (trajectory != null && frame < trajectory.getFrameCount()) {
+			for (int i = 0; i < streamThetas.length; i++) {
+				this.streamXOffsets[i] = trajectory.getX(frame, i);
+				this.streamZOffsets[i] = trajectory.getZ(frame, i);
+			}
+			
+			this.spawnStreams();
+		} else if (frameRunnable != null) {
+			// Frames not yet computed by the worker are skipped rather than waited upon
+			if (frameRunnable.poll(frame, streamXOffsets, streamZOffsets)) {
+				this.spawnStreams();
 			}
 		} else {
 			this.particleShape.updateVariables(location.getX(), location.getZ(), animationTime, theta);
-			this.particleShape.executeExpression(particleType, particleAmount, xOffset, yOffset, zOffset, particleExtra);
+			this.particleShape.evaluate(streamThetas, streamXOffsets, streamZOffsets);
+			this.spawnStreams();
 		}
 		
 		// Particles finished, place reward
-		if (this.location.getBlock().getType() == Material.BEDROCK) {
+		boolean landed = (landingFrame > 0 ? animationTime >= landingFrame : location.getBlock().getType() == Material.BEDROCK);
+		if (landed) {
 			this.location.add(0, 1, 0);
 			
-			// Summon Zeus!
-			for (int i = 0; i < this.lightningAmount; i++)
-				this.worldWrapper.getWorld().strikeLightning(location);
+			// Summon Zeus! (Strikes are merged into one while the server is struggling)
+			int strikes = (degradationLevel > ServerLoadMonitor.LEVEL_NONE ? Math.min(1, lightningAmount) : lightningAmount);
+			for (int i = 0; i < strikes; i++) {
+				if (virtualEffects) {
+					this.plugin.getNMSAbstract().sendLightning(world.getPlayers(), location);
+				} else {
+					this.world.strikeLightning(location);
+				}
+			}
 			
 			DragonBattle dragonBattle = plugin.getNMSAbstract().getEnderDragonBattleFromDragon(dragon);
 			DragonTemplate currentBattle = worldWrapper.getActiveBattle();
 			
 			if (currentBattle != null) {
-				currentBattle.getLoot().spawnLootFor(dragonBattle, dragon);
+				BattleRandom battleRandom = worldWrapper.getBattleRandom();
+				if (battleRandom != null) {
+					currentBattle.getLoot().spawnLootFor(dragonBattle, dragon, battleRandom.stream(BattleRandom.STREAM_LOOT));
+				} else {
+					currentBattle.getLoot().spawnLootFor(dragonBattle, dragon);
+				}
 			}
 
 			if (respawnDragon && world.getPlayers().size() > 0 && plugin.getConfig().getBoolean("respawn-on-death", true)) {
@@ -165,5 +213,64 @@ public class DragonDeathRunnable extends BukkitRunnable {
 			this.cancel();
 		}
 	}
-
+	
+	@Override
+	public void cancel() {
+		super.cancel();
+		this.plugin.getParticleBudget().unregister(emitter);
+		
+		if (frameRunnable != null) {
+			this.frameRunnable.cancel();
+		}
+	}
+	
+	/**
+	 * Get the frame on which the reward lands and the animation completes
+	 * 
+	 * @return the landing frame, starting at 1 for the first tick of the animation. -1 if
+	 * unknown, in which case landing is checked every frame
+	 */
+	public int getLandingFrame() {
+		return landingFrame;
+	}
+	
+	private void spawnStreams() {
+		this.emitter.emit(world, particleType, location.getX(), location.getY(), location.getZ(), streamXOffsets, streamZOffsets, streamThetas.length,
+				particleAmount, xOffset, yOffset, zOffset, particleExtra);
+	}
+	
+	/*
+	 * Find the frame on which the descending location first enters a bedrock block (the top
+	 * of the exit portal's pillar). The portal column is read once rather than every frame,
+	 * and the descent is replayed with the same arithmetic as run()
+	 */
+	private static int predictLandingFrame(World world, Location start, double multiplier) {
+		if (multiplier <= 0 || start.getY() < 0) return -1;
+		
+		int x = start.getBlockX(), z = start.getBlockZ();
+		int top = Math.min(Math.min(start.getBlockY(), world.getMaxHeight() - 1), world.getHighestBlockYAt(x, z));
+		if (top < 0) return -1;
+		
+		boolean[] bedrock = new boolean[top + 1];
+		boolean found = false;
+		for (int y = top; y >= 0; y--) {
+			if (world.getBlockAt(x, y, z).getType() == Material.BEDROCK) {
+				bedrock[y] = found = true;
+			}
+		}
+		
+		if (!found) return -1;
+		
+		double y = start.getY();
+		for (int frame = 1; frame <= ParticleTrajectory.MAX_FRAMES; frame++) {
+			y -= 1 / multiplier;
+			
+			int blockY = Location.locToBlock(y);
+			if (blockY < 0) break;
+			if (blockY <= top && bedrock[blockY]) return frame;
+		}
+		
+		return -1;
+	}
+	
 }
\ No newline at end of file
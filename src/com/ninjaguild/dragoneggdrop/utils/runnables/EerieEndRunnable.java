@@ -0,0 +1,249 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.utils.runnables;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import com.ninjaguild.dragoneggdrop.DragonEggDrop;
+import com.ninjaguild.dragoneggdrop.management.AnimationTask;
+import com.ninjaguild.dragoneggdrop.management.ServerLoadMonitor;
+import com.ninjaguild.dragoneggdrop.utils.ParticleEmitter;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.World;
+import org.bukkit.World.Environment;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+
+/**
+ * Represents an AnimationTask that covers the central island of each End world in
+ * purple particles and smoke (the "eerie-end" option). Rather than covering the whole
+ * island, a few sparse emitters are placed in each loaded chunk within range of a player.
+ * Emitters are computed once per chunk and only displayed to the players near them, such
+ * that the cost of this task scales with the amount of players on the island rather than
+ * its area
+ */
+public class EerieEndRunnable extends AnimationTask {
+
+	// The amount of runs between removing emitters of chunks that are no longer loaded
+	private static final int SWEEP_INTERVAL = 20;
+
+	private final DragonEggDrop plugin;
+	private final ParticleEmitter emitter;
+
+	// Emitters of each End world, keyed by chunk coordinates
+	private final Map<UUID, Map<Long, ChunkEmitters>> worldEmitters = new HashMap<>();
+	private final List<ChunkEmitters> activeChunks = new ArrayList<>();
+	private final Location playerLocation = new Location(null, 0, 0, 0);
+
+	private final Particle particleType, smokeType;
+	private final double radius, playerRange;
+	private final int emittersPerChunk;
+	private long runs = 0;
+
+	/**
+	 * Construct and start a new EerieEndRunnable
+	 *
+	 * @param plugin an instance of the DragonEggDrop plugin
+	 *
+	 * @throws IllegalArgumentException if a configured particle type is invalid
+	 */
+	public EerieEndRunnable(DragonEggDrop plugin) {
+		this.plugin = plugin;
+
+		FileConfiguration config = plugin.getConfig();
+		this.particleType = Particle.valueOf(config.getString("eerie-end.particle", "PORTAL").toUpperCase());
+		this.smokeType = Particle.valueOf(config.getString("eerie-end.smoke-particle", "SMOKE_LARGE").toUpperCase());
+		this.radius = Math.max(0.0, config.getDouble("eerie-end.radius", 96.0));
+		this.playerRange = Math.max(0.0, config.getDouble("eerie-end.player-range", 24.0));
+		this.emittersPerChunk = Math.max(1, config.getInt("eerie-end.emitters-per-chunk", 3));
+
+		this.emitter = new ParticleEmitter(plugin.getNMSAbstract());
+		plugin.getParticleBudget().register(emitter);
+
+		this.runTaskTimer(plugin, 0, Math.max(1, config.getLong("eerie-end.interval", 10L)));
+	}
+
+	@Override
+	public void run() {
+		this.runs++;
+
+		// Purely cosmetic, so nothing is displayed while the server is struggling the most
+		int degradationLevel = plugin.getLoadMonitor().getDegradationLevel();
+		if (degradationLevel >= ServerLoadMonitor.LEVEL_MINIMAL) return;
+		this.emitter.setReduction(degradationLevel + 1);
+
+		for (World world : Bukkit.getWorlds()) {
+			if (world.getEnvironment() != Environment.THE_END) continue;
+
+			Map<Long, ChunkEmitters> chunks = worldEmitters.computeIfAbsent(world.getUID(), k -> new HashMap<>());
+			if (runs % SWEEP_INTERVAL == 0) {
+				chunks.values().removeIf(c -> !world.isChunkLoaded(c.chunkX, c.chunkZ));
+			}
+
+			List<Player> players = world.getPlayers();
+			if (players.isEmpty()) continue;
+
+			this.collectActiveChunks(world, players, chunks);
+			for (ChunkEmitters chunk : activeChunks) {
+				for (int i = 0; i < chunk.heights.length; i++) {
+					double[] xOffsets = chunk.xOffsets[i], zOffsets = chunk.zOffsets[i];
+					this.emitter.emit(chunk.viewers, particleType, chunk.centerX, chunk.heights[i], chunk.centerZ, xOffsets, zOffsets, xOffsets.length, 4, 1.5, 0.75, 1.5, 0.5);
+					this.emitter.emit(chunk.viewers, smokeType, chunk.centerX, chunk.heights[i], chunk.centerZ, xOffsets, zOffsets, xOffsets.length, 1, 1.5, 0.25, 1.5, 0.0);
+				}
+
+				chunk.viewers.clear();
+			}
+
+			this.activeChunks.clear();
+		}
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+		this.plugin.getParticleBudget().unregister(emitter);
+		this.worldEmitters.clear();
+	}
+
+	/*
+	 * Gather each loaded island chunk within range of at least one player, along with the
+	 * players in range of it. Emitters are computed the first time a chunk is gathered
+	 */
+	private void collectActiveChunks(World world, List<Player> players, Map<Long, ChunkEmitters> chunks) {
+		int chunkRange = (int) Math.ceil(playerRange / 16.0);
+		double coveredRadius = radius + playerRange;
+
+		for (Player player : players) {
+			player.getLocation(playerLocation);
+
+			double px = playerLocation.getX(), pz = playerLocation.getZ();
+			if (px * px + pz * pz > coveredRadius * coveredRadius) continue;
+
+			int playerChunkX = playerLocation.getBlockX() >> 4, playerChunkZ = playerLocation.getBlockZ() >> 4;
+			for (int chunkX = playerChunkX - chunkRange; chunkX <= playerChunkX + chunkRange; chunkX++) {
+				for (int chunkZ = playerChunkZ - chunkRange; chunkZ <= playerChunkZ + chunkRange; chunkZ++) {
+					if (!intersectsIsland(chunkX, chunkZ) || !world.isChunkLoaded(chunkX, chunkZ)) continue;
+
+					long key = ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+					ChunkEmitters chunk = chunks.get(key);
+					if (chunk == null) {
+						chunk = computeEmitters(world, chunkX, chunkZ);
+						chunks.put(key, chunk);
+					}
+
+					if (chunk.heights.length == 0) continue;
+
+					if (chunk.lastRun != runs) {
+						chunk.lastRun = runs;
+						this.activeChunks.add(chunk);
+					}
+
+					chunk.viewers.add(player);
+				}
+			}
+		}
+	}
+
+	private boolean intersectsIsland(int chunkX, int chunkZ) {
+		// Distance from the center of the End to the closest point of the chunk
+		double dx = Math.max(0, Math.max(chunkX << 4, -((chunkX << 4) + 16)));
+		double dz = Math.max(0, Math.max(chunkZ << 4, -((chunkZ << 4) + 16)));
+		return dx * dx + dz * dz <= radius * radius;
+	}
+
+	/*
+	 * Place emitters on random surface columns of the chunk inside the island radius. Columns
+	 * are seeded by the world seed and chunk coordinates such that emitters remain in the same
+	 * place after being swept. Emitters are grouped into layers of equal height in order for
+	 * each layer to be emitted as a single frame
+	 */
+	private ChunkEmitters computeEmitters(World world, int chunkX, int chunkZ) {
+		Random random = new Random(world.getSeed() ^ (chunkX * 341873128712L + chunkZ * 132897987541L));
+
+		int[] columnX = new int[emittersPerChunk], columnZ = new int[emittersPerChunk], columnY = new int[emittersPerChunk];
+		int columns = 0;
+		for (int i = 0; i < emittersPerChunk; i++) {
+			int x = (chunkX << 4) + random.nextInt(16), z = (chunkZ << 4) + random.nextInt(16);
+			if (x * x + z * z > radius * radius) continue;
+
+			int y = world.getHighestBlockYAt(x, z);
+			if (y <= 0) continue; // No ground to hover over
+
+			columnX[columns] = x;
+			columnZ[columns] = z;
+			columnY[columns++] = y;
+		}
+
+		int[] heights = Arrays.stream(columnY, 0, columns).distinct().sorted().toArray();
+		ChunkEmitters chunk = new ChunkEmitters(chunkX, chunkZ, heights.length);
+		for (int i = 0; i < heights.length; i++) {
+			int layerSize = 0;
+			for (int j = 0; j < columns; j++) {
+				if (columnY[j] == heights[i]) layerSize++;
+			}
+
+			chunk.heights[i] = heights[i] + 1.0;
+			chunk.xOffsets[i] = new double[layerSize];
+			chunk.zOffsets[i] = new double[layerSize];
+			for (int j = 0, index = 0; j < columns; j++) {
+				if (columnY[j] != heights[i]) continue;
+
+				chunk.xOffsets[i][index] = columnX[j] + 0.5 - chunk.centerX;
+				chunk.zOffsets[i][index++] = columnZ[j] + 0.5 - chunk.centerZ;
+			}
+		}
+
+		return chunk;
+	}
+
+	private static final class ChunkEmitters {
+
+		private final int chunkX, chunkZ;
+		private final double centerX, centerZ;
+
+		// One layer of emitters per distinct surface height
+		private final double[] heights;
+		private final double[][] xOffsets, zOffsets;
+
+		private final List<Player> viewers = new ArrayList<>();
+		private long lastRun = -1;
+
+		private ChunkEmitters(int chunkX, int chunkZ, int layers) {
+			this.chunkX = chunkX;
+			this.chunkZ = chunkZ;
+			this.centerX = (chunkX << 4) + 8.0;
+			this.centerZ = (chunkZ << 4) + 8.0;
+			this.heights = new double[layers];
+			this.xOffsets = new double[layers][];
+			this.zOffsets = new double[layers][];
+		}
+
+	}
+
+}
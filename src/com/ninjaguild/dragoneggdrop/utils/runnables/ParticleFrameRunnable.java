@@ -0,0 +1,146 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.utils.runnables;
+
+import com.ninjaguild.dragoneggdrop.DragonEggDrop;
+import com.ninjaguild.dragoneggdrop.utils.ParticleShapeDefinition;
+import com.ninjaguild.dragoneggdrop.utils.ParticleTrajectory;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.scheduler.BukkitRunnable;
+
+/**
+ * Represents an asynchronous BukkitRunnable computing the particle offsets of a
+ * death animation ahead of time. Frames are written into a fixed-size ring buffer
+ * from which the main thread polls a single frame per tick (see
+ * {@link #poll(int, double[], double[])}), such that no expressions are evaluated
+ * on the main thread.
+ * <p>
+ * The buffer has a single producer (this runnable) and a single consumer. If the
+ * consumer polls a frame that has not yet been computed, the frame is skipped by
+ * both sides rather than blocking the main thread
+ *
+ * @author Parker Hawke - 2008Choco
+ */
+public class ParticleFrameRunnable extends BukkitRunnable {
+
+	private final ParticleShapeDefinition particleShape;
+	private final double x, z;
+	private final int particleStreamInterval, streams, capacity, frames;
+
+	private final double[] thetas, xResults, zResults;
+	private final double[] offsets;
+
+	private final Object lock = new Object();
+	private double theta = 0;
+
+	// Frames [produced - capacity, produced) are available. Frames before consumed have been read
+	private volatile int produced = 0, consumed = 0;
+
+	/**
+	 * Construct and start a new ParticleFrameRunnable
+	 *
+	 * @param plugin an instance of the DragonEggDrop plugin
+	 * @param particleShape the particle shape to evaluate. Must not be used by any other thread
+	 * @param x the x coordinate of the animation
+	 * @param z the z coordinate of the animation
+	 * @param particleStreamInterval the interval in degrees between each particle stream
+	 * @param capacity the amount of frames to compute ahead of time
+	 * @param frames the total amount of frames in the animation. If 0 or less, frames are
+	 * computed until cancelled
+	 */
+	public ParticleFrameRunnable(DragonEggDrop plugin, ParticleShapeDefinition particleShape, double x, double z, int particleStreamInterval, int capacity, int frames) {
+		Validate.notNull(particleShape, "Cannot compute frames of a null particle shape");
+		Validate.isTrue(capacity > 0, "Frame capacity must be positive");
+
+		this.particleShape = particleShape;
+		this.x = x;
+		this.z = z;
+		this.particleStreamInterval = particleStreamInterval;
+		this.streams = (359 / particleStreamInterval) + 1;
+		this.capacity = capacity;
+		this.frames = (frames > 0 ? frames : Integer.MAX_VALUE);
+
+		this.thetas = new double[streams];
+		this.xResults = new double[streams];
+		this.zResults = new double[streams];
+		this.offsets = new double[capacity * streams * 2];
+
+		this.runTaskTimerAsynchronously(plugin, 0, 1);
+	}
+
+	@Override
+	public void run() {
+		// Repeating asynchronous tasks may overlap if a run exceeds one tick
+		synchronized (lock) {
+			this.produceFrames();
+		}
+	}
+	
+	private void produceFrames() {
+		int frame = produced;
+
+		// Skip frames the consumer has already passed, keeping theta in step
+		for (int skipTo = consumed; frame < skipTo; frame++) {
+			this.theta = ParticleTrajectory.advanceTheta(theta + 5, particleStreamInterval, thetas);
+		}
+
+		for (; frame - consumed < capacity && frame < frames; frame++) {
+			this.theta = ParticleTrajectory.advanceTheta(theta + 5, particleStreamInterval, thetas);
+			this.particleShape.updateVariables(x, z, frame + 1, theta);
+			this.particleShape.evaluate(thetas, xResults, zResults);
+
+			int index = (frame % capacity) * streams * 2;
+			for (int i = 0; i < streams; i++) {
+				this.offsets[index++] = xResults[i];
+				this.offsets[index++] = zResults[i];
+			}
+
+			this.produced = frame + 1;
+		}
+	}
+
+	/**
+	 * Poll the offsets of a frame from the buffer. This method may only be called by a
+	 * single consumer thread, and frames must be polled in ascending order
+	 *
+	 * @param frame the frame to poll, starting at 0 for the first tick of the animation
+	 * @param xOffsets the array in which to store the x offset of each stream
+	 * @param zOffsets the array in which to store the z offset of each stream
+	 *
+	 * @return true if the frame was available, false if it has not yet been computed (in
+	 * which case it is skipped)
+	 */
+	public boolean poll(int frame, double[] xOffsets, double[] zOffsets) {
+		boolean available = (frame < produced);
+
+		if (available) {
+			int index = (frame % capacity) * streams * 2;
+			for (int i = 0; i < streams; i++) {
+				xOffsets[i] = offsets[index++];
+				zOffsets[i] = offsets[index++];
+			}
+		}
+
+		this.consumed = frame + 1;
+		return available;
+	}
+
+}
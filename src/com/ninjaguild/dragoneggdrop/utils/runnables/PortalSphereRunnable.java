@@ -0,0 +1,174 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.utils.runnables;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.ninjaguild.dragoneggdrop.DragonEggDrop;
+import com.ninjaguild.dragoneggdrop.management.AnimationTask;
+import com.ninjaguild.dragoneggdrop.management.ServerLoadMonitor;
+import com.ninjaguild.dragoneggdrop.utils.ParticleEmitter;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.World;
+import org.bukkit.configuration.file.FileConfiguration;
+
+/**
+ * Represents an AnimationTask that displays a slowly rotating, broken sphere of fire
+ * surrounding the exit portal while it is idle. The sphere is computed once as an evenly
+ * distributed (Fibonacci) set of points from which seeded holes are removed. Each frame
+ * only rotates and emits an interleaved slice of those points
+ */
+public class PortalSphereRunnable extends AnimationTask {
+
+	// The amount of holes broken into the sphere
+	private static final int HOLES = 5;
+
+	// The fraction of remaining points randomly removed to roughen the edges of holes
+	private static final double CRACKLE = 0.1;
+
+	private static final double GOLDEN_ANGLE = Math.PI * (3 - Math.sqrt(5));
+
+	private final DragonEggDrop plugin;
+	private final ParticleEmitter emitter;
+
+	private final World world;
+	private final double centerX, centerY, centerZ;
+
+	// Unrotated sphere points, packed as x, y, z
+	private final float[] points;
+	private final int pointCount;
+	private final double[] xOffsets, yOffsets, zOffsets;
+
+	private final Particle particleType;
+	private final int slices;
+	private final double rotationSpeed;
+	private int frame = 0;
+
+	/**
+	 * Construct and start a new PortalSphereRunnable
+	 *
+	 * @param plugin an instance of the DragonEggDrop plugin
+	 * @param portalLocation the location of the exit portal around which to display the sphere
+	 *
+	 * @throws IllegalArgumentException if the configured particle type is invalid
+	 */
+	public PortalSphereRunnable(DragonEggDrop plugin, Location portalLocation) {
+		Validate.notNull(portalLocation, "Cannot display a sphere around a null portal location");
+
+		this.plugin = plugin;
+		this.world = portalLocation.getWorld();
+		this.centerX = portalLocation.getX();
+		this.centerY = portalLocation.getY();
+		this.centerZ = portalLocation.getZ();
+
+		FileConfiguration config = plugin.getConfig();
+		this.particleType = Particle.valueOf(config.getString("portal-sphere.particle", "FLAME").toUpperCase());
+		this.slices = Math.max(1, config.getInt("portal-sphere.slices", 4));
+		this.rotationSpeed = Math.toRadians(config.getDouble("portal-sphere.rotation-speed", 1.5));
+
+		this.points = computePoints(Math.max(1, config.getInt("portal-sphere.points", 600)), config.getDouble("portal-sphere.radius", 6.0),
+				Math.min(Math.max(config.getDouble("portal-sphere.broken", 0.3), 0.0), 0.95), config.getLong("portal-sphere.seed", 0L));
+		this.pointCount = points.length / 3;
+
+		int sliceLength = (pointCount + slices - 1) / slices;
+		this.xOffsets = new double[sliceLength];
+		this.yOffsets = new double[sliceLength];
+		this.zOffsets = new double[sliceLength];
+
+		this.emitter = new ParticleEmitter(plugin.getNMSAbstract());
+		plugin.getParticleBudget().register(emitter);
+
+		this.runTaskTimer(plugin, 0, Math.max(1, config.getLong("portal-sphere.interval", 1L)));
+	}
+
+	@Override
+	public void run() {
+		int frame = this.frame++;
+
+		int degradationLevel = plugin.getLoadMonitor().getDegradationLevel();
+		if (degradationLevel >= ServerLoadMonitor.LEVEL_MINIMAL && frame % 2 == 1) return;
+		this.emitter.setReduction(degradationLevel + 1);
+
+		double angle = frame * rotationSpeed;
+		double cos = Math.cos(angle), sin = Math.sin(angle);
+
+		// Rotate only the points of this frame's slice about the vertical axis
+		int length = 0;
+		for (int i = frame % slices; i < pointCount; i += slices, length++) {
+			float x = points[i * 3], y = points[i * 3 + 1], z = points[i * 3 + 2];
+
+			this.xOffsets[length] = x * cos - z * sin;
+			this.yOffsets[length] = y;
+			this.zOffsets[length] = x * sin + z * cos;
+		}
+
+		this.emitter.emit(world.getPlayers(), particleType, centerX, centerY, centerZ, xOffsets, yOffsets, zOffsets, length, 1, 0.0, 0.0, 0.0, 0.0);
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+		this.plugin.getParticleBudget().unregister(emitter);
+	}
+
+	/*
+	 * Distribute points evenly over a sphere along a golden angle spiral, then remove those
+	 * falling within seeded circular holes covering roughly the broken fraction of its surface
+	 */
+	private static float[] computePoints(int count, double radius, double broken, long seed) {
+		Random random = new Random(seed);
+
+		// Each hole is a spherical cap of (1 - cos(a)) / 2 of the sphere's surface
+		double[] holes = new double[HOLES * 3];
+		for (int i = 0; i < HOLES; i++) {
+			double y = random.nextDouble() * 2 - 1, phi = random.nextDouble() * 2 * Math.PI, r = Math.sqrt(1 - y * y);
+			holes[i * 3] = Math.cos(phi) * r;
+			holes[i * 3 + 1] = y;
+			holes[i * 3 + 2] = Math.sin(phi) * r;
+		}
+		double holeCos = 1 - 2 * broken / HOLES;
+
+		float[] points = new float[count * 3];
+		int kept = 0;
+		for (int i = 0; i < count; i++) {
+			double y = 1 - 2 * (i + 0.5) / count, r = Math.sqrt(1 - y * y), phi = i * GOLDEN_ANGLE;
+			double x = Math.cos(phi) * r, z = Math.sin(phi) * r;
+
+			boolean inHole = false;
+			for (int hole = 0; hole < HOLES && !inHole; hole++) {
+				inHole = (x * holes[hole * 3] + y * holes[hole * 3 + 1] + z * holes[hole * 3 + 2]) > holeCos;
+			}
+
+			if (inHole || (broken > 0 && random.nextDouble() < CRACKLE)) continue;
+
+			points[kept * 3] = (float) (x * radius);
+			points[kept * 3 + 1] = (float) (y * radius);
+			points[kept * 3 + 2] = (float) (z * radius);
+			kept++;
+		}
+
+		return Arrays.copyOf(points, kept * 3);
+	}
+
+}
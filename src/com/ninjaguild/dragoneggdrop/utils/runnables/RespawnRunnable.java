@@ -26,7 +26,9 @@ import com.ninjaguild.dragoneggdrop.DragonEggDrop;
 import com.ninjaguild.dragoneggdrop.api.BattleState;
 import com.ninjaguild.dragoneggdrop.api.BattleStateChangeEvent;
 import com.ninjaguild.dragoneggdrop.api.PortalCrystal;
+import com.ninjaguild.dragoneggdrop.management.AnimationTask;
 import com.ninjaguild.dragoneggdrop.management.EndWorldWrapper;
+import com.ninjaguild.dragoneggdrop.management.ServerLoadMonitor;
 import com.ninjaguild.dragoneggdrop.versions.DragonBattle;
 import com.ninjaguild.dragoneggdrop.versions.NMSAbstract;
 
@@ -39,13 +41,15 @@ import org.bukkit.Sound;
 import org.bukkit.World;
 import org.bukkit.entity.EnderCrystal;
 import org.bukkit.entity.EnderDragon;
-import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.entity.Player;
 
 /**
- * Represents a BukkitRunnable that handles the respawning of the 
+ * Represents an AnimationTask that handles the respawning of the 
  * Ender Dragon after it has been slain
  */
-public class RespawnRunnable extends BukkitRunnable {
+public class RespawnRunnable extends AnimationTask {
+
+	private static final double EXPLOSION_RANGE_SQUARED = 64 * 64;
 
 	private final DragonEggDrop plugin;
 	private final EndWorldWrapper worldWrapper;
@@ -54,7 +58,7 @@ public class RespawnRunnable extends BukkitRunnable {
 	private final DragonBattle dragonBattle;
 	private final EnderDragon dragon;
 	
-	private final boolean announceRespawn;
+	private final boolean announceRespawn, virtualEffects;
 	private final List<String> announceMessages;
 	
 	private int currentCrystal = 0, currentMessage = 0;
@@ -80,6 +84,7 @@ public class RespawnRunnable extends BukkitRunnable {
 				.map(s -> ChatColor.translateAlternateColorCodes('&', s))
 				.collect(Collectors.toList());
 		this.announceRespawn = announceMessages.size() > 0;
+		this.virtualEffects = plugin.getConfig().getBoolean("virtual-effects", false);
 		
 		// Event call
 		BattleStateChangeEvent bscEventCrystals = new BattleStateChangeEvent(dragonBattle, dragon, BattleState.DRAGON_DEAD, BattleState.CRYSTALS_SPAWNING);
@@ -89,7 +94,12 @@ public class RespawnRunnable extends BukkitRunnable {
 	@Override
 	public void run() {
 		if (this.secondsUntilRespawn > 0) {
-			if (announceRespawn) {
+			// Announce less frequently while the server is struggling, though always during the final seconds
+			int degradationLevel = plugin.getLoadMonitor().getDegradationLevel();
+			int announceInterval = (degradationLevel == ServerLoadMonitor.LEVEL_NONE ? 1 : degradationLevel * 2);
+			boolean announce = (secondsUntilRespawn <= 10 || secondsUntilRespawn % announceInterval == 0);
+			
+			if (announceRespawn && announce) {
 				if (this.currentMessage >= announceMessages.size()) this.currentMessage = 0;
 				
 				// Show actionbar messages
@@ -121,7 +131,7 @@ public class RespawnRunnable extends BukkitRunnable {
 		if (existingCrystal != null) existingCrystal.remove();
 		
 		crystalPos.spawn(world);
-		crystalWorld.createExplosion(crystalLocation.getX(), crystalLocation.getY(), crystalLocation.getZ(), 0F, false, false);
+		this.createExplosion(crystalLocation);
 		crystalWorld.spawnParticle(Particle.EXPLOSION_HUGE, crystalLocation, 0);
 		
 		// All crystals respawned
@@ -139,7 +149,7 @@ public class RespawnRunnable extends BukkitRunnable {
 					portalCrystal.get(world).remove();
 					
 					crystalWorld.getPlayers().forEach(p -> p.playSound(location, Sound.BLOCK_FIRE_EXTINGUISH, 1000, 1));
-					crystalWorld.createExplosion(location.getX(), location.getY(), location.getZ(), 0F, false, false);
+					this.createExplosion(location);
 				}
 				
 				this.cancel();
@@ -166,6 +176,23 @@ public class RespawnRunnable extends BukkitRunnable {
 		return secondsUntilRespawn;
 	}
 	
+	/*
+	 * Create a purely cosmetic explosion. Virtual explosions are sent only to players within
+	 * the range to which the server would send a real explosion
+	 */
+	private void createExplosion(Location location) {
+		World world = location.getWorld();
+		
+		if (virtualEffects) {
+			List<Player> players = world.getPlayers().stream()
+					.filter(p -> p.getLocation().distanceSquared(location) < EXPLOSION_RANGE_SQUARED)
+					.collect(Collectors.toList());
+			this.nmsAbstract.sendExplosion(players, location);
+		} else {
+			world.createExplosion(location.getX(), location.getY(), location.getZ(), 0F, false, false);
+		}
+	}
+	
 	private String getFormattedTime(int timeInSeconds) {
 		StringBuilder resultTime = new StringBuilder();
 		
@@ -20,21 +20,21 @@
 package com.ninjaguild.dragoneggdrop.utils.runnables;
 
 import com.ninjaguild.dragoneggdrop.DragonEggDrop;
+import com.ninjaguild.dragoneggdrop.management.AnimationTask;
 import com.ninjaguild.dragoneggdrop.versions.DragonBattle;
 
 import org.bukkit.World;
 import org.bukkit.entity.EnderCrystal;
 import org.bukkit.entity.EnderDragon;
 import org.bukkit.entity.Entity;
-import org.bukkit.scheduler.BukkitRunnable;
 
 /**
- * Represents a BukkitRunnable that ensures the respawn state of the
+ * Represents an AnimationTask that ensures the respawn state of the
  * Ender Dragon due to issues in vanilla dragon respawning mechanics.
  * If a dragon has not respawned within 40 seconds (800 ticks), the
  * respawning process will restart
  */
-public class RespawnSafeguardRunnable extends BukkitRunnable {
+public class RespawnSafeguardRunnable extends AnimationTask {
 	
 	// Respawn takes about 30 seconds. Timeout at 35 seconds
 	private static final long TIMEOUT_PERIOD_TICKS = 700L;
@@ -19,10 +19,15 @@
 
 package com.ninjaguild.dragoneggdrop.versions;
 
+import java.util.Collection;
+
+import org.bukkit.Location;
+import org.bukkit.Particle;
 import org.bukkit.World;
 import org.bukkit.block.Chest;
 import org.bukkit.entity.EnderDragon;
 import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
 
 /**
  * An abstract implementation of necessary net.minecraft.server and
@@ -90,4 +95,51 @@ public interface NMSAbstract {
 	 */
 	public void broadcastActionBar(String message, World world);
 	
+	/**
+	 * Send a batch of particles to a list of given players. A packet is built once for
+	 * each particle location and shared between all players, rather than resolving
+	 * recipients and building packets for every particle
+	 * 
+	 * @param players the players to send the particles to
+	 * @param particle the type of particle to send. Must not require additional data
+	 * @param x the x coordinates of the particles
+	 * @param y the y coordinates of the particles
+	 * @param z the z coordinates of the particles
+	 * @param length the amount of particle locations to read from the coordinate arrays
+	 * @param amount the amount of particles to display at each location
+	 * @param offsetX the x offset of each particle
+	 * @param offsetY the y offset of each particle
+	 * @param offsetZ the z offset of each particle
+	 * @param extra the extra value of each particle
+	 */
+	public void sendParticles(Collection<? extends Player> players, Particle particle, double[] x, double[] y, double[] z, int length, int amount, double offsetX, double offsetY, double offsetZ, double extra);
+	
+	/**
+	 * Display a lightning strike and play its thunder to a list of given players without
+	 * spawning a lightning entity. No fire is started and no entities are damaged
+	 * 
+	 * @param players the players to send the lightning to
+	 * @param location the location at which the lightning should strike
+	 */
+	public void sendLightning(Collection<? extends Player> players, Location location);
+	
+	/**
+	 * Display a zero-power explosion (particles and sound) to a list of given players without
+	 * creating an explosion in the world
+	 * 
+	 * @param players the players to send the explosion to
+	 * @param location the location of the explosion
+	 */
+	public void sendExplosion(Collection<? extends Player> players, Location location);
+	
+	/**
+	 * Create a server-backed copy of an item to be used as a prototype. Placing the prototype
+	 * in an inventory or cloning it copies its underlying server item directly rather than
+	 * rebuilding one from the item's meta
+	 * 
+	 * @param item the item to copy
+	 * @return the item prototype
+	 */
+	public ItemStack createItemPrototype(ItemStack item);
+	
 }
\ No newline at end of file
@@ -20,25 +20,43 @@
 package com.ninjaguild.dragoneggdrop.versions.v1_10;
 
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
 
 import com.ninjaguild.dragoneggdrop.versions.DragonBattle;
 import com.ninjaguild.dragoneggdrop.versions.NMSAbstract;
 
 import net.minecraft.server.v1_10_R1.EnderDragonBattle;
 import net.minecraft.server.v1_10_R1.EntityEnderDragon;
+import net.minecraft.server.v1_10_R1.EntityLightning;
+import net.minecraft.server.v1_10_R1.EnumParticle;
 import net.minecraft.server.v1_10_R1.IChatBaseComponent.ChatSerializer;
 import net.minecraft.server.v1_10_R1.PacketPlayOutChat;
+import net.minecraft.server.v1_10_R1.PacketPlayOutExplosion;
+import net.minecraft.server.v1_10_R1.PacketPlayOutNamedSoundEffect;
+import net.minecraft.server.v1_10_R1.PacketPlayOutSpawnEntityWeather;
+import net.minecraft.server.v1_10_R1.PacketPlayOutWorldParticles;
+import net.minecraft.server.v1_10_R1.PlayerConnection;
+import net.minecraft.server.v1_10_R1.SoundCategory;
 import net.minecraft.server.v1_10_R1.WorldProvider;
 import net.minecraft.server.v1_10_R1.WorldProviderTheEnd;
 
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.Sound;
 import org.bukkit.World;
 import org.bukkit.block.Chest;
+import org.bukkit.craftbukkit.v1_10_R1.CraftParticle;
+import org.bukkit.craftbukkit.v1_10_R1.CraftSound;
 import org.bukkit.craftbukkit.v1_10_R1.CraftWorld;
 import org.bukkit.craftbukkit.v1_10_R1.block.CraftChest;
 import org.bukkit.craftbukkit.v1_10_R1.entity.CraftEnderDragon;
 import org.bukkit.craftbukkit.v1_10_R1.entity.CraftPlayer;
+import org.bukkit.craftbukkit.v1_10_R1.inventory.CraftItemStack;
 import org.bukkit.entity.EnderDragon;
 import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
 
 /**
  * An abstract implementation of necessary net.minecraft.server and
@@ -106,4 +124,59 @@ public class NMSAbstract1_10_R1 implements NMSAbstract {
 		PacketPlayOutChat packet = new PacketPlayOutChat(ChatSerializer.a("{\"text\":\"" + message + "\"}"), (byte) 2);
 		world.getPlayers().forEach(p -> ((CraftPlayer) p).getHandle().playerConnection.sendPacket(packet));
 	}
+
+	@Override
+	public void sendParticles(Collection<? extends Player> players, Particle particle, double[] x, double[] y, double[] z, int length, int amount, double offsetX, double offsetY, double offsetZ, double extra) {
+		if (players.isEmpty() || length <= 0) return;
+		
+		EnumParticle nmsParticle = CraftParticle.toNMS(particle);
+		PacketPlayOutWorldParticles[] packets = new PacketPlayOutWorldParticles[length];
+		for (int i = 0; i < length; i++) {
+			packets[i] = new PacketPlayOutWorldParticles(nmsParticle, false, (float) x[i], (float) y[i], (float) z[i], (float) offsetX, (float) offsetY, (float) offsetZ, (float) extra, amount);
+		}
+		
+		// Packets are sent through the connection such that they remain ordered with (and queued behind) all other packets
+		for (Player player : players) {
+			PlayerConnection connection = ((CraftPlayer) player).getHandle().playerConnection;
+			for (PacketPlayOutWorldParticles packet : packets) {
+				connection.sendPacket(packet);
+			}
+		}
+	}
+
+	@Override
+	public void sendLightning(Collection<? extends Player> players, Location location) {
+		if (players.isEmpty()) return;
+		
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		double x = location.getX(), y = location.getY(), z = location.getZ();
+		
+		// An effect-only bolt that is never added to the world. Its sounds are played by the server, not the client
+		EntityLightning lightning = new EntityLightning(((CraftWorld) location.getWorld()).getHandle(), x, y, z, true);
+		PacketPlayOutSpawnEntityWeather packetLightning = new PacketPlayOutSpawnEntityWeather(lightning);
+		PacketPlayOutNamedSoundEffect packetThunder = new PacketPlayOutNamedSoundEffect(CraftSound.getSoundEffect(CraftSound.getSound(Sound.ENTITY_LIGHTNING_THUNDER)),
+				SoundCategory.WEATHER, x, y, z, 10000.0F, 0.8F + random.nextFloat() * 0.2F);
+		PacketPlayOutNamedSoundEffect packetImpact = new PacketPlayOutNamedSoundEffect(CraftSound.getSoundEffect(CraftSound.getSound(Sound.ENTITY_LIGHTNING_IMPACT)),
+				SoundCategory.WEATHER, x, y, z, 2.0F, 0.5F + random.nextFloat() * 0.2F);
+		
+		players.forEach(p -> {
+			PlayerConnection connection = ((CraftPlayer) p).getHandle().playerConnection;
+			connection.sendPacket(packetLightning);
+			connection.sendPacket(packetThunder);
+			connection.sendPacket(packetImpact);
+		});
+	}
+
+	@Override
+	public void sendExplosion(Collection<? extends Player> players, Location location) {
+		if (players.isEmpty()) return;
+		
+		PacketPlayOutExplosion packet = new PacketPlayOutExplosion(location.getX(), location.getY(), location.getZ(), 0.0F, Collections.emptyList(), null);
+		players.forEach(p -> ((CraftPlayer) p).getHandle().playerConnection.sendPacket(packet));
+	}
+
+	@Override
+	public ItemStack createItemPrototype(ItemStack item) {
+		return (item != null ? CraftItemStack.asCraftCopy(item) : null);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,214 @@
+/*
+    DragonEggDrop
+    Copyright (C) 2016  NinjaStix
+    ninjastix84@gmail.com
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.ninjaguild.dragoneggdrop.utils.math;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Verifies that compiled expressions evaluate to the same results as the interpreted
+ * expression tree they were compiled from
+ *
+ * @author Parker Hawke - 2008Choco
+ */
+public class CompiledExpressionTest {
+
+	private static final double EPSILON = 1e-9;
+
+	private static final double[] X_VALUES = { -720, -361.5, -90, -1, -0.25, 0, 0.5, 1, 2, 45, 90, 180, 270, 1234.5678 };
+	private static final double[] Y_VALUES = { -3, -0.5, 0, 1, 2.5, 7 };
+
+	// Call counters of the impure operator, one per evaluation path
+	private static int interpretedCalls = 0, compiledCalls = 0;
+	private static boolean countCompiled = false;
+
+	@BeforeClass
+	public static void injectOperators() {
+		MathUtils.injectMathematicalOperator("triple", x -> x * 3, true);
+		MathUtils.injectMathematicalOperator("clampunit", x -> Math.max(-1, Math.min(1, x)), true);
+		MathUtils.injectMathematicalOperator("counter", x -> x + (countCompiled ? compiledCalls++ : interpretedCalls++), false);
+	}
+
+	@Test
+	public void testArithmetic() {
+		assertEquivalent("1 + 2 * 3 - 4 / 5");
+		assertEquivalent("(1 + 2) * (3 - 4) / 5");
+		assertEquivalent("x + y * x - y / x");
+		assertEquivalent("x / y");
+		assertEquivalent("((x))");
+		assertEquivalent("x * 0.5 + .25");
+		assertEquivalent("1 / 0");
+		assertEquivalent("0 / 0");
+	}
+
+	@Test
+	public void testUnaryMinus() {
+		assertEquivalent("-x");
+		assertEquivalent("--x");
+		assertEquivalent("-+-x");
+		assertEquivalent("-x * -y");
+		assertEquivalent("x - -y");
+		assertEquivalent("-(x + y)");
+		assertEquivalent("-2 ^ 2");
+		assertEquivalent("-x ^ 2");
+		assertEquivalent("2 ^ -x");
+		assertEquivalent("-sin x");
+
+		assertEquals(-4, MathUtils.parseExpression("-2 ^ 2").evaluate(), EPSILON);
+	}
+
+	@Test
+	public void testPowerAssociativity() {
+		assertEquivalent("2 ^ 3 ^ 2");
+		assertEquivalent("x ^ y");
+		assertEquivalent("y ^ 2 ^ 0.5");
+		assertEquivalent("(2 ^ 3) ^ 2");
+		assertEquivalent("2 ^ y ^ 2 * x");
+
+		// Exponentiation is right-associative
+		assertEquals(512, MathUtils.parseExpression("2 ^ 3 ^ 2").evaluate(), EPSILON);
+		assertEquals(64, MathUtils.parseExpression("(2 ^ 3) ^ 2").evaluate(), EPSILON);
+	}
+
+	@Test
+	public void testBuiltInFunctions() {
+		for (String function : new String[] { "sqrt", "abs", "log", "sin", "cos", "tan", "csc", "sec", "cot", "rad", "deg" }) {
+			assertEquivalent(function + " x");
+			assertEquivalent(function + "(x * y)");
+			assertEquivalent(function + "(45)");
+			assertEquivalent("-" + function + " x + " + function + "(y)");
+		}
+
+		assertEquivalent("sin x ^ 2 + cos x ^ 2");
+		assertEquivalent("sin(x) * cos(x) + sin(x) / cos(x)");
+		assertEquivalent("sqrt(abs(x * y)) + log(abs x + 1)");
+		assertEquivalent("deg(rad(x))");
+	}
+
+	@Test
+	public void testInjectedOperators() {
+		assertEquivalent("triple x");
+		assertEquivalent("triple(x + y) - triple 2");
+		assertEquivalent("clampunit(x / 100) * triple(y)");
+		assertEquivalent("sin(triple x) + triple(cos y)");
+	}
+
+	@Test
+	public void testImpureOperatorsAreNotFolded() {
+		Map<String, Double> variables = new HashMap<>();
+		MathExpression interpreted = MathUtils.parseExpression("counter(1) + counter(1)", variables, false);
+		MathExpression compiled = MathUtils.parseExpression("counter(1) + counter(1)", variables, true);
+
+		interpretedCalls = compiledCalls = 0;
+		for (int i = 0; i < 5; i++) {
+			countCompiled = false;
+			double interpretedResult = interpreted.evaluate();
+			countCompiled = true;
+			double compiledResult = compiled.evaluate();
+
+			assertEquals(interpretedResult, compiledResult, EPSILON);
+			assertEquals(2 + 4 * i + 1, compiledResult, EPSILON);
+		}
+
+		assertNotEquals(0, compiledCalls);
+		assertEquals(interpretedCalls, compiledCalls);
+	}
+
+	@Test
+	public void testVariableBindings() {
+		Map<String, Double> variables = new HashMap<>();
+		MathExpression interpreted = MathUtils.parseExpression("x * t + undefined", variables, false);
+		MathExpression compiled = MathUtils.parseExpression("x * t + undefined", variables, true);
+
+		// Unbound variables evaluate to 0 on both paths
+		assertEquals(interpreted.evaluate(), compiled.evaluate(), EPSILON);
+
+		variables.put("x", 2.0);
+		variables.put("t", 3.0);
+		assertEquals(6, compiled.evaluate(), EPSILON);
+		assertEquals(interpreted.evaluate(), compiled.evaluate(), EPSILON);
+
+		variables.put("t", -1.5);
+		assertEquals(interpreted.evaluate(), compiled.evaluate(), EPSILON);
+	}
+
+	@Test
+	public void testBatchEvaluation() {
+		MathExpression compiled = MathUtils.parseExpression("sin(x) * y + x ^ 2", "x", "y");
+		double[] results = new double[X_VALUES.length];
+		compiled.evaluateBatch(new double[] { 0, 2.5 }, 0, X_VALUES, results);
+
+		Map<String, Double> variables = new HashMap<>();
+		MathExpression interpreted = MathUtils.parseExpression("sin(x) * y + x ^ 2", variables, false);
+		variables.put("y", 2.5);
+
+		for (int i = 0; i < X_VALUES.length; i++) {
+			variables.put("x", X_VALUES[i]);
+			assertEquals(interpreted.evaluate(), results[i], EPSILON);
+		}
+	}
+
+	@Test
+	public void testLongExpressions() {
+		// Generated with wide local variable indices, and too long to be generated (interpreted instead)
+		for (int terms : new int[] { 40, 400 }) {
+			StringBuilder expression = new StringBuilder("y");
+			for (int i = 0; i < terms; i++) {
+				expression.append(" + x * ").append(i).append(" - -y / ").append(i + 1).append(" + abs(x - ").append(i).append(')');
+			}
+
+			assertEquivalent(expression.toString());
+
+			MathExpression compiled = MathUtils.parseExpression(expression.toString(), "x", "y");
+			double[] results = new double[X_VALUES.length];
+			compiled.evaluateBatch(new double[] { 0, -0.5 }, 0, X_VALUES, results);
+			for (int i = 0; i < X_VALUES.length; i++) {
+				assertEquals(compiled.evaluate(new double[] { X_VALUES[i], -0.5 }), results[i], EPSILON);
+			}
+		}
+	}
+
+	/*
+	 * Evaluate the expression through both the interpreted and compiled paths for every
+	 * combination of x and y, expecting equal results (NaN being equal to NaN)
+	 */
+	private static void assertEquivalent(String expression) {
+		Map<String, Double> variables = new HashMap<>();
+		MathExpression interpreted = MathUtils.parseExpression(expression, variables, false);
+		MathExpression compiled = MathUtils.parseExpression(expression, variables, true);
+
+		for (double x : X_VALUES) {
+			for (double y : Y_VALUES) {
+				variables.put("x", x);
+				variables.put("y", y);
+
+				double expected = interpreted.evaluate(), actual = compiled.evaluate();
+				assertEquals(expression + " (x = " + x + ", y = " + y + ")", expected, actual, Math.max(EPSILON, Math.abs(expected) * EPSILON));
+			}
+		}
+	}
+
+}
\ No newline at end of file